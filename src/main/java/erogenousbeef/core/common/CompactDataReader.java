@@ -0,0 +1,212 @@
+package erogenousbeef.core.common;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Reads data written by CompactDataWriter. Values must be read in the order they were written;
+ * check getSchemaVersion() first if your layout has changed over time.
+ *
+ * Malformed or truncated data throws an IllegalArgumentException.
+ *
+ * @author Erogenous Beef
+ */
+public class CompactDataReader {
+
+	private final byte[] buffer;
+	private int position;
+	private final int schemaVersion;
+
+	/**
+	 * @param data Bytes from CompactDataWriter.toByteArray()
+	 */
+	public CompactDataReader(byte[] data) {
+		buffer = data;
+		position = 0;
+
+		if(buffer.length == 0 || readByte() != (byte)CompactDataWriter.MAGIC) {
+			throw new IllegalArgumentException("Not compact multiblock data");
+		}
+		schemaVersion = readVarInt();
+	}
+
+	/**
+	 * @return A reader for the byte array stored by CompactDataWriter.writeToNBT(), or null if there is none.
+	 */
+	public static CompactDataReader fromNBT(NBTTagCompound data, String key) {
+		if(!data.hasKey(key)) { return null; }
+		return new CompactDataReader(data.getByteArray(key));
+	}
+
+	/**
+	 * @return The schema version the data was written with.
+	 */
+	public int getSchemaVersion() {
+		return schemaVersion;
+	}
+
+	/**
+	 * @return True if there is more data to read.
+	 */
+	public boolean hasRemaining() {
+		return position < buffer.length;
+	}
+
+	/* *** Primitives *** */
+
+	public byte readByte() {
+		require(1);
+		return buffer[position++];
+	}
+
+	public boolean readBoolean() {
+		return readByte() != 0;
+	}
+
+	public int readVarInt() {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			if(shift >= 35) { throw new IllegalArgumentException("Malformed varint"); }
+			b = readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		return value;
+	}
+
+	public long readVarLong() {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			if(shift >= 70) { throw new IllegalArgumentException("Malformed varint"); }
+			b = readByte();
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		return value;
+	}
+
+	public int readSignedVarInt() {
+		int value = readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public long readSignedVarLong() {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public float readFloat() {
+		return Float.intBitsToFloat(readFixedInt());
+	}
+
+	public double readDouble() {
+		long high = readFixedInt();
+		long low = readFixedInt() & 0xFFFFFFFFL;
+		return Double.longBitsToDouble((high << 32) | low);
+	}
+
+	public String readString() {
+		return new String(readByteArray(), CompactDataWriter.UTF8);
+	}
+
+	/* *** Packed arrays *** */
+
+	public byte[] readByteArray() {
+		int length = readLength(1);
+		byte[] values = new byte[length];
+		System.arraycopy(buffer, position, values, 0, length);
+		position += length;
+		return values;
+	}
+
+	public int[] readIntArray() {
+		int[] values = new int[readLength(1)];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = readSignedVarInt();
+		}
+		return values;
+	}
+
+	public long[] readLongArray() {
+		long[] values = new long[readLength(1)];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = readSignedVarLong();
+		}
+		return values;
+	}
+
+	public float[] readFloatArray() {
+		float[] values = new float[readLength(4)];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = Float.intBitsToFloat(readFixedInt());
+		}
+		return values;
+	}
+
+	public double[] readDoubleArray() {
+		double[] values = new double[readLength(8)];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = readDouble();
+		}
+		return values;
+	}
+
+	public boolean[] readBooleanArray() {
+		int length = readVarInt();
+		if(length < 0) { throw new IllegalArgumentException("Malformed array length"); }
+		require((length + 7) / 8);
+
+		boolean[] values = new boolean[length];
+		for(int i = 0; i < length; i++) {
+			values[i] = (buffer[position + (i >> 3)] & (1 << (i & 7))) != 0;
+		}
+		position += (length + 7) / 8;
+		return values;
+	}
+
+	/* *** Coordinates *** */
+
+	/**
+	 * @return Coordinates written by CompactDataWriter.writeCoordinates() or one of the per-part
+	 * helpers, packed as by CoordTriplet.pack(), in ascending order.
+	 */
+	public long[] readCoordinates() {
+		long[] coords = new long[readLength(1)];
+		long previous = 0;
+		for(int i = 0; i < coords.length; i++) {
+			previous += readVarLong();
+			coords[i] = previous;
+		}
+		return coords;
+	}
+
+	/* *** PRIVATE HELPERS *** */
+
+	private int readFixedInt() {
+		require(4);
+		int value = ((buffer[position] & 0xFF) << 24) | ((buffer[position+1] & 0xFF) << 16) |
+					((buffer[position+2] & 0xFF) << 8) | (buffer[position+3] & 0xFF);
+		position += 4;
+		return value;
+	}
+
+	/**
+	 * Reads an array length, and checks that the data could hold that many values of the given minimum size.
+	 */
+	private int readLength(int minimumBytesPerValue) {
+		int length = readVarInt();
+		if(length < 0 || (long)length * minimumBytesPerValue > buffer.length - position) {
+			throw new IllegalArgumentException("Malformed array length");
+		}
+		return length;
+	}
+
+	private void require(int bytes) {
+		if(position + bytes > buffer.length) {
+			throw new IllegalArgumentException("Truncated compact multiblock data");
+		}
+	}
+}
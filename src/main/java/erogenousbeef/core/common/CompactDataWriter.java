@@ -0,0 +1,313 @@
+package erogenousbeef.core.common;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Writes data in a compact binary form, for state too large to store comfortably as one NBT tag per value,
+ * e.g. per-part arrays. The result is a single byte array, stored in NBT via writeToNBT().
+ *
+ * Integers are written as varints, so small values take a single byte; signed variants zigzag-encode
+ * first, so small negative values stay small too. Arrays are written as a length followed by their
+ * values. Sets of packed coordinates are sorted and delta-coded, so neighboring parts cost a byte or two each.
+ *
+ * The data begins with a schema version of your choosing, so that you can change the layout later
+ * and still read old saves. Read the data back, in the same order, with CompactDataReader.
+ *
+ * @author Erogenous Beef
+ */
+public class CompactDataWriter {
+
+	// Written before the schema version, to catch data which didn't come from here
+	static final int MAGIC = 0xBC;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private byte[] buffer;
+	private int size;
+
+	/**
+	 * @param schemaVersion The version of your data layout, at least 0.
+	 */
+	public CompactDataWriter(int schemaVersion) {
+		this(schemaVersion, 64);
+	}
+
+	/**
+	 * @param schemaVersion The version of your data layout, at least 0.
+	 * @param expectedSize Roughly how many bytes you expect to write.
+	 */
+	public CompactDataWriter(int schemaVersion, int expectedSize) {
+		if(schemaVersion < 0) { throw new IllegalArgumentException("Schema versions may not be negative"); }
+
+		buffer = new byte[Math.max(expectedSize, 16)];
+		size = 0;
+		writeByte(MAGIC);
+		writeVarInt(schemaVersion);
+	}
+
+	/* *** Primitives *** */
+
+	public void writeByte(int value) {
+		ensureCapacity(1);
+		buffer[size++] = (byte)value;
+	}
+
+	public void writeBoolean(boolean value) {
+		writeByte(value ? 1 : 0);
+	}
+
+	/**
+	 * Writes an int as an unsigned varint: 7 bits per byte, least significant first.
+	 * Negative values take five bytes; use writeSignedVarInt() for values which may be negative.
+	 */
+	public void writeVarInt(int value) {
+		ensureCapacity(5);
+		while((value & ~0x7F) != 0) {
+			buffer[size++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[size++] = (byte)value;
+	}
+
+	/**
+	 * Writes a long as an unsigned varint. Negative values take ten bytes.
+	 */
+	public void writeVarLong(long value) {
+		ensureCapacity(10);
+		while((value & ~0x7FL) != 0) {
+			buffer[size++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[size++] = (byte)value;
+	}
+
+	/**
+	 * Writes an int as a zigzag-encoded varint, so values near zero are short whatever their sign.
+	 */
+	public void writeSignedVarInt(int value) {
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	public void writeSignedVarLong(long value) {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	public void writeFloat(float value) {
+		writeFixedInt(Float.floatToIntBits(value));
+	}
+
+	public void writeDouble(double value) {
+		long bits = Double.doubleToLongBits(value);
+		writeFixedInt((int)(bits >>> 32));
+		writeFixedInt((int)bits);
+	}
+
+	/**
+	 * Writes a string as its length in UTF-8 bytes, then the bytes. Null is written as an empty string.
+	 */
+	public void writeString(String value) {
+		byte[] bytes = value == null ? new byte[0] : value.getBytes(UTF8);
+		writeByteArray(bytes);
+	}
+
+	/* *** Packed arrays *** */
+
+	public void writeByteArray(byte[] values) {
+		writeVarInt(values.length);
+		ensureCapacity(values.length);
+		System.arraycopy(values, 0, buffer, size, values.length);
+		size += values.length;
+	}
+
+	/**
+	 * Writes an int array as zigzag varints.
+	 */
+	public void writeIntArray(int[] values) {
+		writeVarInt(values.length);
+		for(int value : values) {
+			writeSignedVarInt(value);
+		}
+	}
+
+	/**
+	 * Writes a long array as zigzag varints.
+	 */
+	public void writeLongArray(long[] values) {
+		writeVarInt(values.length);
+		for(long value : values) {
+			writeSignedVarLong(value);
+		}
+	}
+
+	/**
+	 * Writes a float array at four bytes per value.
+	 */
+	public void writeFloatArray(float[] values) {
+		writeVarInt(values.length);
+		ensureCapacity(values.length * 4);
+		for(float value : values) {
+			writeFixedInt(Float.floatToIntBits(value));
+		}
+	}
+
+	public void writeDoubleArray(double[] values) {
+		writeVarInt(values.length);
+		ensureCapacity(values.length * 8);
+		for(double value : values) {
+			writeDouble(value);
+		}
+	}
+
+	/**
+	 * Writes a boolean array at one bit per value.
+	 */
+	public void writeBooleanArray(boolean[] values) {
+		writeVarInt(values.length);
+		ensureCapacity((values.length + 7) / 8);
+		int bits = 0;
+		for(int i = 0; i < values.length; i++) {
+			if(values[i]) { bits |= 1 << (i & 7); }
+			if((i & 7) == 7) {
+				buffer[size++] = (byte)bits;
+				bits = 0;
+			}
+		}
+		if((values.length & 7) != 0) {
+			buffer[size++] = (byte)bits;
+		}
+	}
+
+	/* *** Coordinates *** */
+
+	/**
+	 * Writes a set of coordinates, packed by CoordTriplet.pack(), sorted and delta-coded.
+	 * Read them back with CompactDataReader.readCoordinates(), in ascending order.
+	 * @param packedCoords The coordinates to write. Sorted in place.
+	 */
+	public void writeCoordinates(long[] packedCoords) {
+		Arrays.sort(packedCoords);
+		writeSortedCoordinates(packedCoords);
+	}
+
+	/**
+	 * Writes per-part int values, e.g. one per fuel rod: the coordinates as with writeCoordinates(),
+	 * then the values in the same order, as with writeIntArray(). Read them back with
+	 * CompactDataReader.readCoordinates() followed by readIntArray().
+	 * @param packedCoords The parts' coordinates, packed by CoordTriplet.pack()
+	 * @param values The parts' values, in the same order as the coordinates
+	 */
+	public void writeCoordinateInts(long[] packedCoords, int[] values) {
+		int[] order = sortOrder(packedCoords, values.length);
+		writeSortedCoordinates(reorder(packedCoords, order));
+
+		int[] sortedValues = new int[values.length];
+		for(int i = 0; i < order.length; i++) {
+			sortedValues[i] = values[order[i]];
+		}
+		writeIntArray(sortedValues);
+	}
+
+	/**
+	 * Writes per-part float values, e.g. the heat of each fuel rod: the coordinates as with writeCoordinates(),
+	 * then the values in the same order, as with writeFloatArray(). Read them back with
+	 * CompactDataReader.readCoordinates() followed by readFloatArray().
+	 * @param packedCoords The parts' coordinates, packed by CoordTriplet.pack()
+	 * @param values The parts' values, in the same order as the coordinates
+	 */
+	public void writeCoordinateFloats(long[] packedCoords, float[] values) {
+		int[] order = sortOrder(packedCoords, values.length);
+		writeSortedCoordinates(reorder(packedCoords, order));
+
+		float[] sortedValues = new float[values.length];
+		for(int i = 0; i < order.length; i++) {
+			sortedValues[i] = values[order[i]];
+		}
+		writeFloatArray(sortedValues);
+	}
+
+	/* *** Output *** */
+
+	/**
+	 * @return The number of bytes written so far, including the header.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return A copy of the bytes written so far.
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buffer, size);
+	}
+
+	/**
+	 * Stores the bytes written so far in an NBT tag, as a single byte array.
+	 * @param data The tag to write into
+	 * @param key The name of the byte array tag
+	 */
+	public void writeToNBT(NBTTagCompound data, String key) {
+		data.setByteArray(key, toByteArray());
+	}
+
+	/* *** PRIVATE HELPERS *** */
+
+	private void writeSortedCoordinates(long[] sortedCoords) {
+		writeVarInt(sortedCoords.length);
+		long previous = 0;
+		for(long coord : sortedCoords) {
+			// Unsigned difference; correct even when it overflows a signed long
+			writeVarLong(coord - previous);
+			previous = coord;
+		}
+	}
+
+	private void writeFixedInt(int value) {
+		ensureCapacity(4);
+		buffer[size++] = (byte)(value >>> 24);
+		buffer[size++] = (byte)(value >>> 16);
+		buffer[size++] = (byte)(value >>> 8);
+		buffer[size++] = (byte)value;
+	}
+
+	private void ensureCapacity(int extra) {
+		if(size + extra > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+		}
+	}
+
+	/**
+	 * @return The indices of the given coordinates, in ascending order of coordinate.
+	 */
+	private static int[] sortOrder(final long[] packedCoords, int valueCount) {
+		if(packedCoords.length != valueCount) {
+			throw new IllegalArgumentException(String.format("Got %d coordinates, but %d values", packedCoords.length, valueCount));
+		}
+
+		Integer[] order = new Integer[packedCoords.length];
+		for(int i = 0; i < order.length; i++) { order[i] = i; }
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				long coordA = packedCoords[a], coordB = packedCoords[b];
+				return coordA < coordB ? -1 : (coordA == coordB ? 0 : 1);
+			}
+		});
+
+		int[] result = new int[order.length];
+		for(int i = 0; i < result.length; i++) { result[i] = order[i]; }
+		return result;
+	}
+
+	private static long[] reorder(long[] values, int[] order) {
+		long[] reordered = new long[order.length];
+		for(int i = 0; i < order.length; i++) {
+			reordered[i] = values[order[i]];
+		}
+		return reordered;
+	}
+}
@@ -19,6 +19,22 @@ public class CoordTriplet implements Comparable {
 	public int getChunkZ() { return z >> 4; }
 	public long getChunkXZHash() { return ChunkCoordIntPair.chunkXZ2Int(x >> 4, z >> 4); }
 	
+	///// Packing into a single long: 26 bits of X, 12 bits of Y, 26 bits of Z
+	
+	public long pack() { return pack(x, y, z); }
+	
+	public static long pack(int x, int y, int z) {
+		return ((long)(x & 0x3FFFFFF) << 38) | ((long)(y & 0xFFF) << 26) | (long)(z & 0x3FFFFFF);
+	}
+	
+	public static int unpackX(long packed) { return (int)(packed >> 38); }
+	public static int unpackY(long packed) { return (int)(packed << 26 >> 52); }
+	public static int unpackZ(long packed) { return (int)(packed << 38 >> 38); }
+	
+	public static CoordTriplet unpack(long packed) {
+		return new CoordTriplet(unpackX(packed), unpackY(packed), unpackZ(packed));
+	}
+	
 	@Override
 	public boolean equals(Object other) {
 		if(other == null)
@@ -188,4 +188,13 @@ public abstract class IMultiblockPart extends TileEntity {
 	 * multiblock game-data into itself. Generally, you should clear the saved data here.
 	 */
 	public abstract void onMultiblockDataAssimilated();
+	
+	/**
+	 * Called when this part is detached while it is still the save delegate, because its
+	 * chunk is unloading and is about to be saved. Hold on to this data and write it out
+	 * with the part; it should be returned from getMultiblockSaveData() until assimilated.
+	 * Does nothing by default, in which case the part must still be able to write out its controller's data itself.
+	 * @param data The controller's game-data, in NBT format.
+	 */
+	public void retainMultiblockSaveData(NBTTagCompound data) {}
 }
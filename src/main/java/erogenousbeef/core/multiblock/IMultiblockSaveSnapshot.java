@@ -0,0 +1,24 @@
+package erogenousbeef.core.multiblock;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * A copy of a controller's saved state, captured on the server thread by
+ * MultiblockControllerBase.captureSaveSnapshot() and encoded on a background thread,
+ * so that big machines don't spend the server's time serializing themselves during autosaves.
+ *
+ * A snapshot must not refer to anything the game may change after it is captured:
+ * copy arrays and collections, or only share objects which are never modified.
+ * 
+ * @author Erogenous Beef
+ */
+public interface IMultiblockSaveSnapshot {
+
+	/**
+	 * Write the captured state. Called on a background thread.
+	 * Write exactly what the controller's writeToNBT() would have, plus its compact data
+	 * under "multiblockCompact" if it uses any, as this will be read back in the usual way.
+	 * @param data The tag to write into.
+	 */
+	public void writeToNBT(NBTTagCompound data);
+}
@@ -0,0 +1,69 @@
+package erogenousbeef.core.multiblock;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import erogenousbeef.core.common.CoordTriplet;
+
+/**
+ * A region of a world in which a large number of multiblock parts are about to be placed or removed,
+ * e.g. by a schematic loader or world editor. While the session is open, the world registry only
+ * records what happens to parts and machines in the region. When it ends, removed parts are detached
+ * from their machines, and added parts are sorted into machines, in one pass.
+ * 
+ * Obtain one via MultiblockRegistry.beginBulkEdit(), and always pass it to MultiblockRegistry.endBulkEdit().
+ * Sessions left open for longer than MAXIMUM_DURATION ticks are ended automatically.
+ * 
+ * @author Erogenous Beef
+ */
+public class MultiblockBulkEditSession {
+
+	// Ten seconds; far longer than any edit should take, but short enough that a forgotten session doesn't stall machines for long
+	public static final int MAXIMUM_DURATION = 200;
+
+	private final CoordTriplet minimumCoord;
+	private final CoordTriplet maximumCoord;
+	private final long startTick;
+
+	// Parts added to the world within the region, which have not yet been given to any machine
+	final Set<IMultiblockPart> addedParts;
+
+	// Parts removed from the world within the region, which are still attached to their machines
+	final Set<IMultiblockPart> removedParts;
+
+	// Machines in the region whose parts have changed
+	final Set<MultiblockControllerBase> dirtyControllers;
+
+	MultiblockBulkEditSession(CoordTriplet min, CoordTriplet max, long startTick) {
+		minimumCoord = new CoordTriplet(Math.min(min.x, max.x), Math.min(min.y, max.y), Math.min(min.z, max.z));
+		maximumCoord = new CoordTriplet(Math.max(min.x, max.x), Math.max(min.y, max.y), Math.max(min.z, max.z));
+		this.startTick = startTick;
+		addedParts = new HashSet<IMultiblockPart>();
+		removedParts = new HashSet<IMultiblockPart>();
+		dirtyControllers = new HashSet<MultiblockControllerBase>();
+	}
+
+	/**
+	 * @return The world tick on which the session began.
+	 */
+	public long getStartTick() { return startTick; }
+
+	/**
+	 * @return The minimum coordinate of the region being edited, inclusive.
+	 */
+	public CoordTriplet getMinimumCoord() { return minimumCoord.copy(); }
+
+	/**
+	 * @return The maximum coordinate of the region being edited, inclusive.
+	 */
+	public CoordTriplet getMaximumCoord() { return maximumCoord.copy(); }
+
+	/**
+	 * @return True if the given coordinate is within the region being edited.
+	 */
+	public boolean contains(int x, int y, int z) {
+		return x >= minimumCoord.x && x <= maximumCoord.x &&
+				y >= minimumCoord.y && y <= maximumCoord.y &&
+				z >= minimumCoord.z && z <= maximumCoord.z;
+	}
+}
@@ -1,15 +1,29 @@
 package erogenousbeef.core.multiblock;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.play.server.S35PacketUpdateTileEntity;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraftforge.common.util.ForgeDirection;
 import erogenousbeef.core.common.BeefCoreLog;
+import erogenousbeef.core.common.CompactDataReader;
+import erogenousbeef.core.common.CompactDataWriter;
 import erogenousbeef.core.common.CoordTriplet;
 
 /**
@@ -21,6 +35,15 @@ import erogenousbeef.core.common.CoordTriplet;
 public abstract class MultiblockControllerBase {
 	public static final short DIMENSION_UNBOUNDED = -1;
 
+	// Tile entity packet action code for delta sync packets, distinct from full description packets
+	public static final int SYNC_DELTA_ACTION = 0x4D;
+
+	// The most fields a controller may synchronize via delta sync
+	public static final int MAX_SYNC_FIELDS = 64;
+
+	// Tile entity packet action code for server topology packets; see MultiblockRegistry.setServerTopologySync()
+	public static final int TOPOLOGY_ACTION = 0x4E;
+
 	// Multiblock stuff - do not mess with
 	protected World worldObj;
 	
@@ -30,14 +53,28 @@ public abstract class MultiblockControllerBase {
 
 	protected HashSet<IMultiblockPart> connectedParts;
 	
-	/** This is a deterministically-picked coordinate that identifies this
-	 * multiblock uniquely in its dimension.
-	 * Currently, this is the coord with the lowest X, Y and Z coordinates, in that order of evaluation.
+	/**
+	 * Ghosts stand in for parts whose chunks have unloaded, so that the machine's
+	 * connectivity and bounding box survive until those chunks come back.
+	 * Packed coordinates (see CoordTriplet.pack), indexed by the hashed chunk coordinate.
+	 */
+	private HashMap<Long, Set<Long>> ghostParts;
+	
+	/** This is the coordinate of the save delegate, which identifies this multiblock uniquely in its dimension.
+	 * It is elected deterministically: the coord with the lowest X, Y and Z coordinates, in that order of evaluation.
 	 * i.e. If something has a lower X but higher Y/Z coordinates, it will still be the reference.
 	 * If something has the same X but a lower Y coordinate, it will be the reference. Etc.
+	 * Once elected, it stays put until its part is removed or unloaded, even if lower parts are added,
+	 * because every move dirties two chunks and rewrites the machine's data.
 	 */
 	private CoordTriplet referenceCoord;
 
+	/**
+	 * The lowest coordinate among connected parts, which decides which machine consumes which in a merge.
+	 * Kept up to date as parts are added; null if it needs finding again, e.g. after the lowest part was removed.
+	 */
+	private CoordTriplet lowestPartCoord;
+
 	/**
 	 * Minimum bounding box coordinate. Blocks do not necessarily exist at this coord if your machine
 	 * is not a cube/rectangular prism.
@@ -60,14 +97,103 @@ public abstract class MultiblockControllerBase {
 	 */
 	private MultiblockValidationException lastValidationException;
 	
+	/**
+	 * Fingerprint and size of the machine's structure at the moment it was paused.
+	 * If the same parts return, the machine can be restored without being revalidated.
+	 */
+	private boolean hasPausedFingerprint;
+	private long pausedFingerprint;
+	private int pausedPartCount;
+	
+	/**
+	 * Non-part blocks inside the assembled machine's bounding box which have changed since
+	 * the machine was last checked.
+	 */
+	private Set<CoordTriplet> changedBlocks;
+	
+	/**
+	 * Incremented whenever the machine's structure changes. Used to restart validations
+	 * which are spread over several ticks, should the machine change part-way through.
+	 */
+	private int structureVersion;
+	
+	/**
+	 * Where an in-progress multi-tick validation will resume, or -1 if none is in progress,
+	 * and the structure version that validation began with.
+	 */
+	private int validationCursor;
+	private int validationStructureVersion;
+	
+	/**
+	 * Delta sync: each field records the sync version at which it last changed. Fields changed since
+	 * lastSentSyncVersion are sent to watching clients when the registry next flushes this controller's sync.
+	 */
+	private int syncVersion;
+	private int lastSentSyncVersion;
+	private int[] syncFieldVersions;
+	
+	/**
+	 * Incremented whenever anything which may appear in this machine's description packet changes.
+	 * Machines which opt in cache their description data and packet against it, so every watcher gets the same encoding.
+	 */
+	private int stateVersion;
+	private NBTTagCompound cachedDescriptionData;
+	private int cachedDescriptionDataVersion;
+	private S35PacketUpdateTileEntity cachedDescriptionPacket;
+	private int cachedDescriptionPacketVersion;
+	private CoordTriplet cachedDescriptionPacketCoord;
+	
+	// The last save data written, and the state version it was written at
+	private NBTTagCompound cachedSaveData;
+	private int cachedSaveDataVersion;
+	
+	/**
+	 * Client sync scheduling: whether a full description update has been requested since the last
+	 * sync, and the world tick at which the registry last flushed one, or -1 if it never has.
+	 */
+	private boolean fullSyncRequested;
+	private long lastSyncTick;
+	
+	/**
+	 * Off-thread saves: the encode in progress, if any, and the latest completed one, each with the
+	 * state version at which its snapshot was captured; and the world tick since which the state
+	 * version has stood still, or -1 if it hasn't been looked at yet.
+	 */
+	private Future<NBTTagCompound> pendingSaveEncode;
+	private int pendingSaveVersion;
+	private NBTTagCompound encodedSave;
+	private int encodedSaveVersion;
+	private int idleStateVersion;
+	private long idleSinceTick;
+	
+	/**
+	 * Server topology sync: packed coordinates of this machine's parts, identified by the packed
+	 * reference coordinate. On the server, this is what was last sent to clients, along with the
+	 * structure version and assembly state at the time. On the client, it is what the server last said.
+	 */
+	private Set<Long> topology;
+	private long topologyId;
+	private int topologyStructureVersion;
+	private AssemblyState topologyAssemblyState;
+	
+	// This machine's id in the world's MultiblockDataStore, or 0 if it has none yet
+	private long persistentId;
+	
+	// World index: the id this machine was last indexed under, or 0, and its structure version and assembly state at the time
+	private long indexedId;
+	private int indexedStructureVersion;
+	private AssemblyState indexedAssemblyState;
+	
 	protected boolean debugMode;
 	
 	protected MultiblockControllerBase(World world) {
 		// Multiblock stuff
 		worldObj = world;
 		connectedParts  = new HashSet<IMultiblockPart>();
+		ghostParts = new HashMap<Long, Set<Long>>();
 
 		referenceCoord = null;
+		lowestPartCoord = null;
 		assemblyState = AssemblyState.Disassembled;
 
 		minimumCoord = null;
@@ -75,6 +201,25 @@ public abstract class MultiblockControllerBase {
 
 		shouldCheckForDisconnections = true;
 		lastValidationException = null;
+		hasPausedFingerprint = false;
+		changedBlocks = new HashSet<CoordTriplet>();
+		structureVersion = 0;
+		validationCursor = -1;
+		syncVersion = lastSentSyncVersion = 0;
+		syncFieldVersions = null;
+		stateVersion = 0;
+		fullSyncRequested = false;
+		lastSyncTick = -1;
+		pendingSaveEncode = null;
+		encodedSave = null;
+		idleStateVersion = 0;
+		idleSinceTick = -1;
+		topology = null;
+		persistentId = 0;
+		indexedId = 0;
+		cachedDescriptionData = null;
+		cachedDescriptionPacket = null;
+		cachedSaveData = null;
 		
 		debugMode = false;
 	}
@@ -112,13 +257,25 @@ public abstract class MultiblockControllerBase {
 		if(!connectedParts.add(part)) {
 			BeefCoreLog.warning("[%s] Controller %s is double-adding part %d @ %s. This is unusual. If you encounter odd behavior, please tear down the machine and rebuild it.", (worldObj.isRemote?"CLIENT":"SERVER"), hashCode(), part.hashCode(), coord);
 		}
+		onPartCoordAdded(part);
 		
+		// If this part is returning from an unloaded chunk, it no longer needs a stand-in
+		removeGhost(coord.x, coord.y, coord.z);
+		structureVersion++;
+		stateVersion++;
+
 		part.onAttached(this);
 		this.onBlockAdded(part);
 
 		if(part.hasMultiblockSaveData()) {
 			NBTTagCompound savedData = part.getMultiblockSaveData();
+			if(worldObj.isRemote && savedData.hasKey("multiblockSync")) {
+				// Cached from a description packet which arrived before the part was attached
+				readSyncFields(savedData.getCompoundTag("multiblockSync"));
+			}
 			onAttachedPartWithMultiblockData(part, savedData);
+			readCompactMultiblockData(savedData);
+			adoptBulkData(savedData);
 			part.onMultiblockDataAssimilated();
 		}
 		
@@ -126,13 +283,6 @@ public abstract class MultiblockControllerBase {
 			referenceCoord = coord;
 			part.becomeMultiblockSaveDelegate();
 		}
-		else if(coord.compareTo(referenceCoord) < 0) {
-			TileEntity te = this.worldObj.getTileEntity(referenceCoord.x, referenceCoord.y, referenceCoord.z);
-			((IMultiblockPart)te).forfeitMultiblockSaveDelegate();
-			
-			referenceCoord = coord;
-			part.becomeMultiblockSaveDelegate();
-		}
 		else {
 			part.forfeitMultiblockSaveDelegate();
 		}
@@ -204,6 +354,8 @@ public abstract class MultiblockControllerBase {
 		}
 		
 		shouldCheckForDisconnections = true;
+		structureVersion++;
+		stateVersion++;
 	}
 	
 	/**
@@ -213,19 +365,31 @@ public abstract class MultiblockControllerBase {
 	 * @param chunkUnloading Is this entity detaching due to the chunk unloading? If true, the multiblock will be paused instead of broken.
 	 */
 	public void detachBlock(IMultiblockPart part, boolean chunkUnloading) {
+		if(isBoundByServerTopology()) {
+			// The server decides this machine's state and parts, so there's nothing to pause or keep a place for
+			chunkUnloading = false;
+		}
+
 		if(chunkUnloading && this.assemblyState == AssemblyState.Assembled) {
-			this.assemblyState = AssemblyState.Paused;
-			this.onMachinePaused();
+			pauseMachine();
 		}
 
 		// Strip out this part
 		onDetachBlock(part);
+		onPartCoordRemoved(part);
 		if(!connectedParts.remove(part)) {
 			BeefCoreLog.warning("[%s] Double-removing part (%d) @ %d, %d, %d, this is unexpected and may cause problems. If you encounter anomalies, please tear down the reactor and rebuild it.", worldObj.isRemote?"CLIENT":"SERVER", part.hashCode(), part.xCoord, part.yCoord, part.zCoord);
 		}
+		else if(chunkUnloading) {
+			addGhost(part.xCoord, part.yCoord, part.zCoord);
+		}
 
 		if(connectedParts.isEmpty()) {
-			// Destroy/unregister
+			// Destroy/unregister. Bulk data goes with the machine, unless some of it is only unloaded.
+			if(!chunkUnloading && ghostParts.isEmpty()) {
+				releaseBulkData();
+			}
+			clearGhosts();
 			MultiblockRegistry.addDeadController(this.worldObj, this);
 			return;
 		}
@@ -238,6 +402,47 @@ public abstract class MultiblockControllerBase {
 		}
 	}
 
+	/**
+	 * Detach a batch of parts whose chunk is unloading. The machine is paused once, and
+	 * no connectivity check is scheduled for the parts left behind; the unloaded parts
+	 * will rejoin this machine as orphans when their chunk reloads.
+	 * This runs before the chunk is saved, so a departing save delegate is handed a copy
+	 * of this controller's data to write out with its chunk.
+	 * @param parts The parts, attached to this machine, in the chunk that is unloading.
+	 */
+	public void detachBlocksForChunkUnload(Collection<IMultiblockPart> parts) {
+		if(this.assemblyState == AssemblyState.Assembled) {
+			pauseMachine();
+		}
+
+		boolean checkForDisconnections = shouldCheckForDisconnections;
+		for(IMultiblockPart part : parts) {
+			if(!connectedParts.remove(part)) { continue; }
+			onPartCoordRemoved(part);
+
+			if(part.isMultiblockSaveDelegate() && !worldObj.isRemote) {
+				part.retainMultiblockSaveData(writeMultiblockData());
+			}
+
+			onDetachBlock(part);
+			addGhost(part.xCoord, part.yCoord, part.zCoord);
+		}
+		// Assume the remainder is still connected, rather than splitting it up now only to re-merge it later
+		shouldCheckForDisconnections = checkForDisconnections;
+
+		if(connectedParts.isEmpty()) {
+			// Destroy/unregister. The save delegate has our data, so nothing needs to wait for the parts.
+			clearGhosts();
+			MultiblockRegistry.addDeadController(this.worldObj, this);
+			return;
+		}
+
+		// Find new save delegate if we need to.
+		if(referenceCoord == null) {
+			selectNewReferenceCoord();
+		}
+	}
+
 	/**
 	 * Helper method so we don't check for a whole machine until we have enough blocks
 	 * to actually assemble it. This isn't as simple as xmax*ymax*zmax for non-cubic machines
@@ -297,23 +502,80 @@ public abstract class MultiblockControllerBase {
 	 */
 	protected abstract void isMachineWhole() throws MultiblockValidationException;
 	
+	/**
+	 * Override this to spread validation of very large machines over several ticks.
+	 * Your controller must also override validateMachineIncrementally().
+	 * @return The most positions to validate in a single tick, or 0 to always validate the whole machine at once. Defaults to 0.
+	 */
+	protected int getMaximumValidationStepsPerTick() {
+		return 0;
+	}
+	
+	/**
+	 * Validates part of the machine, continuing from where the previous call left off.
+	 * Only used if getMaximumValidationStepsPerTick() is greater than zero. If the machine changes
+	 * between calls, validation is restarted from zero.
+	 * The default implementation simply checks the whole machine at once.
+	 * @param cursor Where to resume validation. Zero when starting a fresh validation.
+	 * @param maxSteps The most positions to check during this call.
+	 * @return The cursor from which to resume on the next tick, or -1 if the whole machine has now been validated.
+	 * @throws MultiblockValidationException if the machine is not whole
+	 */
+	protected int validateMachineIncrementally(int cursor, int maxSteps) throws MultiblockValidationException {
+		isMachineWhole();
+		return -1;
+	}
+	
+	/**
+	 * @return True if this machine is part-way through a validation spread over several ticks.
+	 */
+	public boolean isValidationInProgress() {
+		return validationCursor >= 0;
+	}
+	
 	/**
 	 * Check if the machine is whole or not.
 	 * If the machine was not whole, but now is, assemble the machine.
 	 * If the machine was whole, but no longer is, disassemble the machine.
+	 * If this machine validates over several ticks, this continues the validation in progress, and
+	 * the machine is only assembled once the validation completes. An assembled machine whose
+	 * validation can't complete within one tick is disassembled straight away rather than left running
+	 * while unchecked. The last validation exception is kept until the validation completes.
 	 * @return 
 	 */
 	public void checkIfMachineIsWhole() {
 		AssemblyState oldState = this.assemblyState;
 		boolean isWhole;
-		lastValidationException = null;
+		int maxSteps = getMaximumValidationStepsPerTick();
+		if(maxSteps > 0 && (validationCursor < 0 || validationStructureVersion != structureVersion)) {
+			// Start over; the machine has changed since we began
+			validationCursor = 0;
+			validationStructureVersion = structureVersion;
+		}
+
+		changedBlocks.clear();
 		try {
-			isMachineWhole();
+			if(maxSteps > 0) {
+				validationCursor = validateMachineIncrementally(validationCursor, maxSteps);
+				if(validationCursor >= 0) {
+					// Not done yet, carry on next tick. The machine has changed and may no longer be whole,
+					// so it mustn't keep running in the meantime.
+					if(oldState == AssemblyState.Assembled) {
+						disassembleMachine();
+					}
+					return;
+				}
+			}
+			else {
+				isMachineWhole();
+			}
 			isWhole = true;
+			lastValidationException = null;
 		} catch (MultiblockValidationException e) {
 			lastValidationException = e;
 			isWhole = false;
 		}
+		validationCursor = -1;
 		
 		if(isWhole) {
 			// This will alter assembly state
@@ -326,6 +588,125 @@ public abstract class MultiblockControllerBase {
 		// Else Paused, do nothing
 	}
 	
+	/**
+	 * Called by the registry when a block inside this machine's bounding box has changed,
+	 * and that block is not a multiblock part.
+	 * @return True if the block was recorded and should be re-checked via checkChangedBlocks().
+	 */
+	public boolean onBlockChangedInBounds(int x, int y, int z) {
+		if(validationCursor >= 0) {
+			// The validation in progress may have already passed this block, so it must start over
+			structureVersion++;
+			return false;
+		}
+		else if(assemblyState == AssemblyState.Paused) {
+			// The structure fingerprint doesn't cover this, so we'll need a real check when we restore
+			invalidatePausedFingerprint();
+			return false;
+		}
+		else if(assemblyState != AssemblyState.Assembled) {
+			return false;
+		}
+
+		changedBlocks.add(new CoordTriplet(x, y, z));
+		return true;
+	}
+
+	/**
+	 * Re-checks only the blocks recorded by onBlockChangedInBounds(), rather than the whole
+	 * machine. If one of them is no longer acceptable, the machine is disassembled.
+	 */
+	public void checkChangedBlocks() {
+		if(changedBlocks.isEmpty()) { return; }
+
+		if(assemblyState == AssemblyState.Assembled) {
+			try {
+				validateChangedBlocks(changedBlocks);
+			} catch (MultiblockValidationException e) {
+				lastValidationException = e;
+				disassembleMachine();
+			}
+		}
+		changedBlocks.clear();
+	}
+
+	/**
+	 * Checks whether changed blocks inside an assembled machine's bounding box are still acceptable.
+	 * The default implementation simply re-checks the whole machine; override this if your machine
+	 * can check individual positions.
+	 * @param changedBlocks The coordinates of the changed blocks.
+	 * @throws MultiblockValidationException if the machine is no longer whole
+	 */
+	protected void validateChangedBlocks(Set<CoordTriplet> changedBlocks) throws MultiblockValidationException {
+		isMachineWhole();
+	}
+
+	/**
+	 * Restores a paused machine straight to the assembled state, skipping the connectivity
+	 * check and validation, if exactly the same parts are attached as when it was paused.
+	 * @return True if the machine was restored, false if it must be checked normally.
+	 */
+	public boolean restoreIfUnchanged() {
+		if(assemblyState != AssemblyState.Paused || !hasPausedFingerprint) { return false; }
+		if(hasGhosts() || connectedParts.size() != pausedPartCount) { return false; }
+		if(getStructureFingerprint() != pausedFingerprint) { return false; }
+		
+		// This is the structure we validated before pausing, so it's still connected and whole
+		shouldCheckForDisconnections = false;
+		lastValidationException = null;
+		validationCursor = -1;
+		assembleMachine(AssemblyState.Paused);
+		return true;
+	}
+	
+	/**
+	 * Call this if something the structure fingerprint does not cover has changed while the
+	 * machine was paused, e.g. a non-part block inside the machine. The machine will be fully
+	 * revalidated when it is restored.
+	 */
+	protected void invalidatePausedFingerprint() {
+		hasPausedFingerprint = false;
+	}
+	
+	/**
+	 * Called when an assembled machine is paused because some of its parts' chunks are unloading.
+	 * Records the structure's fingerprint before any parts are detached.
+	 */
+	private void pauseMachine() {
+		pausedFingerprint = getStructureFingerprint();
+		pausedPartCount = connectedParts.size();
+		hasPausedFingerprint = true;
+
+		this.assemblyState = AssemblyState.Paused;
+		stateVersion++;
+		this.onMachinePaused();
+	}
+	
+	private long getStructureFingerprint() {
+		return getStructureFingerprint(connectedParts);
+	}
+	
+	/**
+	 * @return An order-independent hash over the packed coordinates and types of the given parts.
+	 */
+	static long getStructureFingerprint(Collection<IMultiblockPart> parts) {
+		long fingerprint = 0;
+		for(IMultiblockPart part : parts) {
+			fingerprint += mixFingerprint(CoordTriplet.pack(part.xCoord, part.yCoord, part.zCoord) * 31 + part.getClass().hashCode());
+		}
+		return fingerprint;
+	}
+	
+	// 64-bit finalizer from MurmurHash3, so that summing per-part hashes doesn't cancel out
+	private static long mixFingerprint(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+	
 	/**
 	 * Called when a machine becomes "whole" and should begin
 	 * functioning as a game-logically finished machine.
@@ -337,6 +718,8 @@ public abstract class MultiblockControllerBase {
 		}
 		
 		this.assemblyState = AssemblyState.Assembled;
+		stateVersion++;
+		hasPausedFingerprint = false;
 		if(oldState == assemblyState.Paused) {
 			onMachineRestored();
 		}
@@ -357,6 +740,8 @@ public abstract class MultiblockControllerBase {
 		}
 		
 		this.assemblyState = AssemblyState.Disassembled;
+		stateVersion++;
+		hasPausedFingerprint = false;
 		onMachineDisassembled();
 	}
 	
@@ -368,28 +753,50 @@ public abstract class MultiblockControllerBase {
 	 * @param other The controller to merge into this one.
 	 */
 	public void assimilate(MultiblockControllerBase other) {
-		CoordTriplet otherReferenceCoord = other.getReferenceCoord();
-		if(otherReferenceCoord != null && getReferenceCoord().compareTo(otherReferenceCoord) >= 0) {
+		if(_shouldConsume(other) >= 0) {
 			throw new IllegalArgumentException("The controller with the lowest minimum-coord value must consume the one with the higher coords");
 		}
 
 		TileEntity te;
 		Set<IMultiblockPart> partsToAcquire = new HashSet<IMultiblockPart>(other.connectedParts);
 
+		// Take over the other machine's stand-ins for unloaded parts
+		for(Set<Long> chunkGhosts : other.ghostParts.values()) {
+			for(Long ghost : chunkGhosts) {
+				addGhost(CoordTriplet.unpackX(ghost), CoordTriplet.unpackY(ghost), CoordTriplet.unpackZ(ghost));
+			}
+		}
+
 		// releases all blocks and references gently so they can be incorporated into another multiblock
 		other._onAssimilated(this);
+		structureVersion++;
+		stateVersion++;
 		
 		for(IMultiblockPart acquiredPart : partsToAcquire) {
-			// By definition, none of these can be the minimum block.
+			// Our save delegate stays put, so none of these become it.
 			if(acquiredPart.isInvalid()) { continue; }
 			
 			connectedParts.add(acquiredPart);
+			onPartCoordAdded(acquiredPart);
 			acquiredPart.onAssimilated(this);
 			this.onBlockAdded(acquiredPart);
 		}
 
 		this.onAssimilate(other);
 		other.onAssimilated(this);
+
+		// Bulk data was the other machine's to merge into ours in onAssimilate(). If we have none, we take over its id instead.
+		if(!hasBulkData() && other.persistentId != 0) {
+			releaseBulkData();
+			persistentId = other.persistentId;
+			other.persistentId = 0;
+			// The other machine's index entry is ours now, so it mustn't remove it as it is unregistered
+			other.indexedId = 0;
+			markReferenceCoordDirty();
+		}
+		else {
+			other.releaseBulkData();
+		}
 	}
 	
 	/**
@@ -409,6 +816,8 @@ public abstract class MultiblockControllerBase {
 		}
 
 		connectedParts.clear();
+		lowestPartCoord = null;
+		clearGhosts();
 	}
 	
 	/**
@@ -449,6 +858,8 @@ public abstract class MultiblockControllerBase {
 			updateClient();
 		}
 		else if(updateServer()) {
+			stateVersion++;
+
 			// If this returns true, the server has changed its internal data. 
 			// If our chunks are loaded (they should be), we must mark our chunks as dirty.
 			if(minimumCoord != null && maximumCoord != null &&
@@ -490,66 +901,76 @@ public abstract class MultiblockControllerBase {
 	/**
 	 * The "frame" consists of the outer edges of the machine, plus the corners.
 	 * 
-	 * @param world World object for the world in which this controller is located.
+	 * @param world The world in which this controller is located, or, while a rectangular machine is
+	 * being validated, a snapshot of its bounding box. Read the block being tested from here.
 	 * @param x X coordinate of the block being tested
 	 * @param y Y coordinate of the block being tested
 	 * @param z Z coordinate of the block being tested
 	 * @throws MultiblockValidationException if the tested block is not allowed on the machine's frame
 	 */
-	protected void isBlockGoodForFrame(World world, int x, int y, int z) throws MultiblockValidationException {
+	protected void isBlockGoodForFrame(IBlockAccess world, int x, int y, int z) throws MultiblockValidationException {
 		throw new MultiblockValidationException(String.format("%d, %d, %d - Block is not valid for use in the machine's interior", x, y, z));
 	}
 
 	/**
 	 * The top consists of the top face, minus the edges.
-	 * @param world World object for the world in which this controller is located.
+	 * @param world The world in which this controller is located, or, while a rectangular machine is
+	 * being validated, a snapshot of its bounding box. Read the block being tested from here.
 	 * @param x X coordinate of the block being tested
 	 * @param y Y coordinate of the block being tested
 	 * @param z Z coordinate of the block being tested
 	 * @throws MultiblockValidationException if the tested block is not allowed on the machine's top face
 	 */
-	protected void isBlockGoodForTop(World world, int x, int y, int z) throws MultiblockValidationException {
+	protected void isBlockGoodForTop(IBlockAccess world, int x, int y, int z) throws MultiblockValidationException {
 		throw new MultiblockValidationException(String.format("%d, %d, %d - Block is not valid for use in the machine's interior", x, y, z));
 	}
 	
 	/**
 	 * The bottom consists of the bottom face, minus the edges.
-	 * @param world World object for the world in which this controller is located.
+	 * @param world The world in which this controller is located, or, while a rectangular machine is
+	 * being validated, a snapshot of its bounding box. Read the block being tested from here.
 	 * @param x X coordinate of the block being tested
 	 * @param y Y coordinate of the block being tested
 	 * @param z Z coordinate of the block being tested
 	 * @throws MultiblockValidationException if the tested block is not allowed on the machine's bottom face
 	 */
-	protected void isBlockGoodForBottom(World world, int x, int y, int z) throws MultiblockValidationException {
+	protected void isBlockGoodForBottom(IBlockAccess world, int x, int y, int z) throws MultiblockValidationException {
 		throw new MultiblockValidationException(String.format("%d, %d, %d - Block is not valid for use in the machine's interior", x, y, z));
 	}
 	
 	/**
 	 * The sides consists of the N/E/S/W-facing faces, minus the edges.
-	 * @param world World object for the world in which this controller is located.
+	 * @param world The world in which this controller is located, or, while a rectangular machine is
+	 * being validated, a snapshot of its bounding box. Read the block being tested from here.
 	 * @param x X coordinate of the block being tested
 	 * @param y Y coordinate of the block being tested
 	 * @param z Z coordinate of the block being tested
 	 * @throws MultiblockValidationException if the tested block is not allowed on the machine's side faces
 	 */
-	protected void isBlockGoodForSides(World world, int x, int y, int z) throws MultiblockValidationException {
+	protected void isBlockGoodForSides(IBlockAccess world, int x, int y, int z) throws MultiblockValidationException {
 		throw new MultiblockValidationException(String.format("%d, %d, %d - Block is not valid for use in the machine's interior", x, y, z));
 	}
 	
 	/**
 	 * The interior is any block that does not touch blocks outside the machine.
-	 * @param world World object for the world in which this controller is located.
+	 * @param world The world in which this controller is located, or, while a rectangular machine is
+	 * being validated, a snapshot of its bounding box. Read the block being tested from here.
 	 * @param x X coordinate of the block being tested
 	 * @param y Y coordinate of the block being tested
 	 * @param z Z coordinate of the block being tested
 	 * @throws MultiblockValidationException if the tested block is not allowed in the machine's interior
 	 */
-	protected void isBlockGoodForInterior(World world, int x, int y, int z) throws MultiblockValidationException {
+	protected void isBlockGoodForInterior(IBlockAccess world, int x, int y, int z) throws MultiblockValidationException {
 		throw new MultiblockValidationException(String.format("%d, %d, %d - Block is not valid for use in the machine's interior", x, y, z));
 	}
 	
 	/**
-	 * @return The reference coordinate, the block with the lowest x, y, z coordinates, evaluated in that order.
+	 * The reference coordinate is the location of this machine's save delegate, the part which saves
+	 * the machine's data and sends its description packet. It is stable: the first part attached becomes
+	 * the save delegate and stays so until it leaves the machine, even if parts with lower coordinates
+	 * join later. Only then is a new one elected, the loaded part with the lowest x, y, z coordinates,
+	 * evaluated in that order. Don't rely on it being the lowest block; use getMinimumCoord() for that.
+	 * @return The reference coordinate, or null if no part is loaded to act as the save delegate.
 	 */
 	public CoordTriplet getReferenceCoord() {
 		if(referenceCoord == null) { selectNewReferenceCoord(); }
@@ -565,116 +986,491 @@ public abstract class MultiblockControllerBase {
 	public abstract void readFromNBT(NBTTagCompound data);
 
 	/**
-	 * Force this multiblock to recalculate its minimum and maximum coordinates
-	 * from the list of connected parts.
+	 * Override to store some or all of your machine's state in a compact binary form instead of
+	 * as individual NBT tags; worthwhile for large per-part arrays. See CompactDataWriter.
+	 * @return The version of your compact data layout, which your reader will be given. 0 to not use compact data.
 	 */
-	public void recalculateMinMaxCoords() {
-		minimumCoord = new CoordTriplet(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
-		maximumCoord = new CoordTriplet(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
+	protected int getCompactDataVersion() { return 0; }
 
-		for(IMultiblockPart part : connectedParts) {
-			if(part.xCoord < minimumCoord.x) { minimumCoord.x = part.xCoord; }
-			if(part.xCoord > maximumCoord.x) { maximumCoord.x = part.xCoord; }
-			if(part.yCoord < minimumCoord.y) { minimumCoord.y = part.yCoord; }
-			if(part.yCoord > maximumCoord.y) { maximumCoord.y = part.yCoord; }
-			if(part.zCoord < minimumCoord.z) { minimumCoord.z = part.zCoord; }
-			if(part.zCoord > maximumCoord.z) { maximumCoord.z = part.zCoord; }
-		}
-	}
-	
 	/**
-	 * @return The minimum bounding-box coordinate containing this machine's blocks.
+	 * Write state in compact form. Called after writeToNBT(), if getCompactDataVersion() is above 0.
+	 * @param writer The writer, whose schema version is getCompactDataVersion()
 	 */
-	public CoordTriplet getMinimumCoord() {
-		if(minimumCoord == null) { recalculateMinMaxCoords(); }
-		return minimumCoord.copy();
+	protected void writeCompactData(CompactDataWriter writer) {}
+
+	/**
+	 * Read state written by writeCompactData(). Called after onAttachedPartWithMultiblockData(),
+	 * with the same saved data, whenever it holds compact data.
+	 * @param reader The reader. Check its schema version if your layout has changed over time.
+	 */
+	protected void readCompactData(CompactDataReader reader) {}
+
+	/**
+	 * Override to return true to have your machine's save data reused until the state version changes.
+	 * Only do so if everything writeToNBT() writes changes only alongside updateServer() returning true
+	 * or a call to markReferenceCoordForUpdate(), markReferenceCoordDirty(), markSyncFieldChanged() or
+	 * markStateChanged(); otherwise, stale data would be saved.
+	 * @return True if this machine's save data may be reused until the state version changes. Default is false.
+	 */
+	protected boolean shouldCacheSaveData() { return false; }
+
+	/**
+	 * @return This machine's save data, as stored by the save delegate: writeToNBT()'s tags,
+	 * plus a single byte array of compact data for machines which use it.
+	 * Reused for as long as the state version is unchanged, so do not modify it.
+	 */
+	NBTTagCompound writeMultiblockData() {
+		if(hasCurrentSaveData()) {
+			return cachedSaveData;
+		}
+
+		NBTTagCompound data = new NBTTagCompound();
+		writeToNBT(data);
+
+		int compactDataVersion = getCompactDataVersion();
+		if(compactDataVersion > 0) {
+			CompactDataWriter writer = new CompactDataWriter(compactDataVersion);
+			writeCompactData(writer);
+			writer.writeToNBT(data, "multiblockCompact");
+		}
+
+		if(persistentId != 0) {
+			data.setLong("multiblockStoreId", persistentId);
+		}
+
+		if(shouldCacheSaveData()) {
+			cachedSaveData = data;
+			cachedSaveDataVersion = stateVersion;
+		}
+		return data;
 	}
 
 	/**
-	 * @return The maximum bounding-box coordinate containing this machine's blocks.
+	 * @return True if the last save data written is still up to date.
 	 */
-	public CoordTriplet getMaximumCoord() {
-		if(maximumCoord == null) { recalculateMinMaxCoords(); }
-		return maximumCoord.copy();
+	private boolean hasCurrentSaveData() {
+		return cachedSaveData != null && cachedSaveDataVersion == stateVersion && shouldCacheSaveData();
 	}
 
 	/**
-	 * Called when the save delegate's tile entity is being asked for its description packet
-	 * @param data A fresh compound tag to write your multiblock data into
+	 * Override to have this machine's state encoded for saving on a background thread.
+	 * Capture a copy of everything writeToNBT() would write; see IMultiblockSaveSnapshot.
+	 *
+	 * This only helps machines which sit idle between saves. A save only uses the encoded snapshot
+	 * if the state version is still the same as when it was captured, so a snapshot is only captured
+	 * once the state version has stood still for getSaveSnapshotInterval() ticks; a machine whose
+	 * state changes every tick never captures one, and always saves synchronously.
+	 * Called on the server thread.
+	 * @return A snapshot of this machine's saved state, or null to always save synchronously. Default is null.
 	 */
-	public abstract void formatDescriptionPacket(NBTTagCompound data);
+	protected IMultiblockSaveSnapshot captureSaveSnapshot() { return null; }
 
 	/**
-	 * Called when the save delegate's tile entity receiving a description packet
-	 * @param data A compound tag containing multiblock data to import
+	 * @return How many ticks this machine's state version must stand still before a save snapshot
+	 * is captured. Default is 100.
 	 */
-	public abstract void decodeDescriptionPacket(NBTTagCompound data);
+	protected int getSaveSnapshotInterval() { return 100; }
 
 	/**
-	 * @return True if this controller has no associated blocks, false otherwise
+	 * Called by the registry every server tick. Collects a finished snapshot encode, and captures
+	 * and submits a new one once this machine has changed and then stayed idle for the interval.
 	 */
-	public boolean isEmpty() {
-		return connectedParts.isEmpty();
+	void updateSaveSnapshot(long worldTick) {
+		collectSaveEncode();
+		if(idleSinceTick < 0 || idleStateVersion != stateVersion) {
+			// Still changing; a snapshot now would be out of date before any save could use it
+			idleStateVersion = stateVersion;
+			idleSinceTick = worldTick;
+			return;
+		}
+
+		if(pendingSaveEncode != null) { return; }
+		if(encodedSave != null && encodedSaveVersion == stateVersion) { return; }
+		if(worldTick - idleSinceTick < getSaveSnapshotInterval()) { return; }
+
+		IMultiblockSaveSnapshot snapshot = captureSaveSnapshot();
+		if(snapshot == null) {
+			// Ask again after another interval
+			idleSinceTick = worldTick;
+			return;
+		}
+
+		pendingSaveVersion = stateVersion;
+		pendingSaveEncode = MultiblockSaveEncoder.encode(snapshot);
 	}
 
 	/**
-	 * Tests whether this multiblock should consume the other multiblock
-	 * and become the new multiblock master when the two multiblocks
-	 * are adjacent. Assumes both multiblocks are the same type.
-	 * @param otherController The other multiblock controller.
-	 * @return True if this multiblock should consume the other, false otherwise.
+	 * @return This machine's save data for the save delegate's regular chunk save. This is the latest
+	 * off-thread encode, if this machine is unchanged since its snapshot was captured; otherwise,
+	 * the data is encoded right now. Do not modify the result.
 	 */
-	public boolean shouldConsume(MultiblockControllerBase otherController) {
-		if(!otherController.getClass().equals(getClass())) {
-			throw new IllegalArgumentException("Attempting to merge two multiblocks with different master classes - this should never happen!");
+	NBTTagCompound getMultiblockDataForSave() {
+		if(hasCurrentSaveData()) {
+			return cachedSaveData;
+		}
+
+		collectSaveEncode();
+		if(encodedSave == null || encodedSaveVersion != stateVersion) {
+			return writeMultiblockData();
+		}
+
+		// Snapshots don't know about bulk data. Add its id to a copy, as earlier saves may still hold the encoded compound.
+		NBTTagCompound data = (NBTTagCompound)encodedSave.copy();
+		if(persistentId != 0) {
+			data.setLong("multiblockStoreId", persistentId);
 		}
-		
-		if(otherController == this) { return false; } // Don't be silly, don't eat yourself.
-		
-		int res = _shouldConsume(otherController);
-		if(res < 0) { return true; }
-		else if(res > 0) { return false; }
 		else {
-			// Strip dead parts from both and retry
-			BeefCoreLog.warning("[%s] Encountered two controllers with the same reference coordinate. Auditing connected parts and retrying.", worldObj.isRemote?"CLIENT":"SERVER");
-			auditParts();
-			otherController.auditParts();
-			
-			res = _shouldConsume(otherController);
-			if(res < 0) { return true; }
-			else if(res > 0) { return false; }
-			else {
-				BeefCoreLog.error("My Controller (%d): size (%d), parts: %s", hashCode(), connectedParts.size(), getPartsListString());
-				BeefCoreLog.error("Other Controller (%d): size (%d), coords: %s", otherController.hashCode(), otherController.connectedParts.size(), otherController.getPartsListString());
-				throw new IllegalArgumentException("[" + (worldObj.isRemote?"CLIENT":"SERVER") + "] Two controllers with the same reference coord that somehow both have valid parts - this should never happen!"); 
-			}
+			data.removeTag("multiblockStoreId");
+		}
 
+		if(shouldCacheSaveData()) {
+			cachedSaveData = data;
+			cachedSaveDataVersion = stateVersion;
 		}
+		return data;
 	}
-	
-	private int _shouldConsume(MultiblockControllerBase otherController) {
-		CoordTriplet myCoord = getReferenceCoord();
-		CoordTriplet theirCoord = otherController.getReferenceCoord();
-		
-		// Always consume other controllers if their reference coordinate is null - this means they're empty and can be assimilated on the cheap
-		if(theirCoord == null) { return -1; }
-		else { return myCoord.compareTo(theirCoord); }
+
+	private void collectSaveEncode() {
+		if(pendingSaveEncode == null || !pendingSaveEncode.isDone()) { return; }
+
+		try {
+			encodedSave = pendingSaveEncode.get();
+			encodedSaveVersion = pendingSaveVersion;
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e) {
+			BeefCoreLog.error("[SERVER] Controller %d failed to encode its save snapshot; it will save synchronously: %s", hashCode(), e.getCause());
+		}
+		finally {
+			pendingSaveEncode = null;
+		}
 	}
-	
-	private String getPartsListString() {
-		StringBuilder sb = new StringBuilder();
-		boolean first = true;
-		for(IMultiblockPart part : connectedParts) {
-			if(!first) {
-				sb.append(", ");
-			}
-			sb.append(String.format("(%d: %d, %d, %d)", part.hashCode(), part.xCoord, part.yCoord, part.zCoord));
-			first = false;
+
+	private void readCompactMultiblockData(NBTTagCompound data) {
+		if(!data.hasKey("multiblockCompact")) { return; }
+
+		try {
+			readCompactData(CompactDataReader.fromNBT(data, "multiblockCompact"));
+		}
+		catch(IllegalArgumentException e) {
+			BeefCoreLog.error("[%s] Controller %d could not read its compact data, which will be ignored: %s", (worldObj.isRemote?"CLIENT":"SERVER"), hashCode(), e.getMessage());
 		}
-		
-		return sb.toString();
 	}
-	
+
+	/* *** Bulk Data *** */
+
+	/**
+	 * @return This machine's id in its world's MultiblockDataStore and MultiblockWorldIndex,
+	 * or 0 if it has none yet.
+	 */
+	public long getPersistentId() { return persistentId; }
+
+	/**
+	 * @return True if this machine has bulk data in its world's store.
+	 */
+	private boolean hasBulkData() {
+		if(persistentId == 0 || worldObj.isRemote) { return false; }
+		MultiblockDataStore store = MultiblockRegistry.getDataStore(worldObj);
+		return store != null && store.hasData(persistentId);
+	}
+
+	/**
+	 * Maps this machine's bulk data, creating or growing it as needed. Use this for state too large
+	 * to rewrite into NBT every save, e.g. a heat or fluid value for every block: write into the buffer
+	 * directly, and only this machine's id is saved with it. Server only.
+	 *
+	 * When machines merge, read the consumed machine's data in onAssimilate(); it is deleted afterwards.
+	 * A machine's data is deleted when its last block is broken.
+	 * @param minimumSize The number of bytes needed
+	 * @return A view of the data, whose limit is minimumSize, or null on the client or if it could not be mapped.
+	 */
+	protected ByteBuffer getBulkData(int minimumSize) {
+		MultiblockDataStore store = worldObj.isRemote ? null : MultiblockRegistry.getDataStore(worldObj);
+		if(store == null) { return null; }
+
+		try {
+			if(persistentId == 0) {
+				persistentId = store.allocateId();
+				// The save delegate must write out the new id
+				markReferenceCoordDirty();
+			}
+			return store.getBuffer(persistentId, minimumSize);
+		}
+		catch(IOException e) {
+			BeefCoreLog.error("[SERVER] Controller %d could not map its bulk data: %s", hashCode(), e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Maps this machine's existing bulk data, e.g. to read it back after loading. Server only.
+	 * @return A view of all of the data, or null if there is none or it could not be mapped.
+	 */
+	protected ByteBuffer getExistingBulkData() {
+		if(persistentId == 0 || worldObj.isRemote) { return null; }
+		MultiblockDataStore store = MultiblockRegistry.getDataStore(worldObj);
+		if(store == null) { return null; }
+
+		try {
+			return store.getExistingBuffer(persistentId);
+		}
+		catch(IOException e) {
+			BeefCoreLog.error("[SERVER] Controller %d could not map its bulk data: %s", hashCode(), e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Releases this machine's bulk data, to be deleted once no saved chunk can refer to it.
+	 * Stop using any buffers from getBulkData() first.
+	 */
+	protected void releaseBulkData() {
+		if(persistentId == 0 || worldObj.isRemote) { return; }
+
+		MultiblockDataStore store = MultiblockRegistry.getDataStore(worldObj);
+		if(store != null) {
+			store.release(persistentId);
+		}
+		persistentId = 0;
+		stateVersion++;
+	}
+
+	/**
+	 * Picks up the persistent id stored with a part's save data, in place of any id we were only
+	 * given for the world index, taking back its bulk data if it had been released since the part
+	 * was saved. Bulk data from a different machine than the one we already have can't be merged
+	 * any more, and is deleted.
+	 */
+	private void adoptBulkData(NBTTagCompound data) {
+		if(worldObj.isRemote || !data.hasKey("multiblockStoreId")) { return; }
+
+		long savedId = data.getLong("multiblockStoreId");
+		if(savedId == 0 || savedId == persistentId) { return; }
+
+		MultiblockDataStore store = MultiblockRegistry.getDataStore(worldObj);
+		if(!hasBulkData()) {
+			// Our old index entry, if any, is replaced on the next update
+			releaseBulkData();
+			persistentId = savedId;
+			if(store != null) {
+				store.retain(savedId);
+			}
+			stateVersion++;
+		}
+		else if(store != null && store.retain(savedId)) {
+			BeefCoreLog.warning("[SERVER] Controller %d already has bulk data (%d), so the bulk data saved with another machine (%d) will be deleted", hashCode(), persistentId, savedId);
+			store.release(savedId);
+		}
+	}
+
+	/**
+	 * Called by the registry every server tick while the world index is enabled. Updates this machine's
+	 * entry if its parts or assembly state have changed. A machine is only given a persistent id for the
+	 * index once it first assembles, so the fragments of a machine under construction, which come and go
+	 * as they merge, don't each claim an id and an entry; a machine which already has one, for its bulk
+	 * data or from an earlier assembly, keeps it and stays listed.
+	 * Machines with parts in unloaded chunks are left with the entry they had when last fully loaded.
+	 */
+	void updateWorldIndex(MultiblockWorldIndex index, MultiblockDataStore store) {
+		if(connectedParts.isEmpty() || !ghostParts.isEmpty()) { return; }
+		if(persistentId == 0 && indexedId == 0 && assemblyState != AssemblyState.Assembled) { return; }
+		if(indexedId == persistentId &&
+				indexedStructureVersion == structureVersion && indexedAssemblyState == assemblyState) { return; }
+
+		try {
+			if(persistentId == 0) {
+				persistentId = store.allocateId();
+				// The save delegate must write out the new id
+				markReferenceCoordDirty();
+			}
+			if(indexedId != 0 && indexedId != persistentId) {
+				index.remove(indexedId);
+			}
+			index.put(persistentId, getClass().getName(), getReferenceCoord(), getMinimumCoord(), getMaximumCoord(), connectedParts.size(), assemblyState.ordinal());
+			indexedId = persistentId;
+		}
+		catch(IOException e) {
+			BeefCoreLog.error("[SERVER] Controller %d could not update the world index: %s", hashCode(), e.getMessage());
+		}
+		finally {
+			// On failure, try again once something changes rather than every tick
+			indexedStructureVersion = structureVersion;
+			indexedAssemblyState = assemblyState;
+		}
+	}
+
+	/**
+	 * Called by the registry as this machine is unregistered. Machines which are merely unloaded keep
+	 * their entries; only one whose persistent id was given up, e.g. because it was destroyed or
+	 * merged into another machine, is removed.
+	 */
+	void removeFromWorldIndex(MultiblockWorldIndex index) {
+		if(indexedId != 0 && indexedId != persistentId) {
+			index.remove(indexedId);
+			indexedId = 0;
+		}
+	}
+
+	/**
+	 * Force this multiblock to recalculate its minimum and maximum coordinates
+	 * from the list of connected parts.
+	 */
+	public void recalculateMinMaxCoords() {
+		minimumCoord = new CoordTriplet(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		maximumCoord = new CoordTriplet(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
+
+		for(IMultiblockPart part : connectedParts) {
+			if(part.xCoord < minimumCoord.x) { minimumCoord.x = part.xCoord; }
+			if(part.xCoord > maximumCoord.x) { maximumCoord.x = part.xCoord; }
+			if(part.yCoord < minimumCoord.y) { minimumCoord.y = part.yCoord; }
+			if(part.yCoord > maximumCoord.y) { maximumCoord.y = part.yCoord; }
+			if(part.zCoord < minimumCoord.z) { minimumCoord.z = part.zCoord; }
+			if(part.zCoord > maximumCoord.z) { maximumCoord.z = part.zCoord; }
+		}
+
+		// Parts in unloaded chunks are still part of the machine's footprint
+		int x, y, z;
+		for(Set<Long> chunkGhosts : ghostParts.values()) {
+			for(Long ghost : chunkGhosts) {
+				x = CoordTriplet.unpackX(ghost);
+				y = CoordTriplet.unpackY(ghost);
+				z = CoordTriplet.unpackZ(ghost);
+				if(x < minimumCoord.x) { minimumCoord.x = x; }
+				if(x > maximumCoord.x) { maximumCoord.x = x; }
+				if(y < minimumCoord.y) { minimumCoord.y = y; }
+				if(y > maximumCoord.y) { maximumCoord.y = y; }
+				if(z < minimumCoord.z) { minimumCoord.z = z; }
+				if(z > maximumCoord.z) { maximumCoord.z = z; }
+			}
+		}
+	}
+	
+	/**
+	 * @return The minimum bounding-box coordinate containing this machine's blocks.
+	 */
+	public CoordTriplet getMinimumCoord() {
+		if(minimumCoord == null) { recalculateMinMaxCoords(); }
+		return minimumCoord.copy();
+	}
+
+	/**
+	 * @return The maximum bounding-box coordinate containing this machine's blocks.
+	 */
+	public CoordTriplet getMaximumCoord() {
+		if(maximumCoord == null) { recalculateMinMaxCoords(); }
+		return maximumCoord.copy();
+	}
+
+	/**
+	 * Called when the save delegate's tile entity is being asked for its description packet
+	 * @param data A fresh compound tag to write your multiblock data into
+	 */
+	public abstract void formatDescriptionPacket(NBTTagCompound data);
+
+	/**
+	 * Called when the save delegate's tile entity receiving a description packet
+	 * @param data A compound tag containing multiblock data to import
+	 */
+	public abstract void decodeDescriptionPacket(NBTTagCompound data);
+
+	/**
+	 * @return True if this controller has no associated blocks, false otherwise
+	 */
+	public boolean isEmpty() {
+		return connectedParts.isEmpty();
+	}
+
+	/**
+	 * Tests whether this multiblock should consume the other multiblock
+	 * and become the new multiblock master when the two multiblocks
+	 * are adjacent. Assumes both multiblocks are the same type.
+	 * @param otherController The other multiblock controller.
+	 * @return True if this multiblock should consume the other, false otherwise.
+	 */
+	public boolean shouldConsume(MultiblockControllerBase otherController) {
+		if(!otherController.getClass().equals(getClass())) {
+			throw new IllegalArgumentException("Attempting to merge two multiblocks with different master classes - this should never happen!");
+		}
+		
+		if(otherController == this) { return false; } // Don't be silly, don't eat yourself.
+		
+		int res = _shouldConsume(otherController);
+		if(res < 0) { return true; }
+		else if(res > 0) { return false; }
+		else {
+			// Strip dead parts from both and retry
+			BeefCoreLog.warning("[%s] Encountered two controllers with the same lowest part coordinate. Auditing connected parts and retrying.", worldObj.isRemote?"CLIENT":"SERVER");
+			auditParts();
+			otherController.auditParts();
+			
+			res = _shouldConsume(otherController);
+			if(res < 0) { return true; }
+			else if(res > 0) { return false; }
+			else {
+				BeefCoreLog.error("My Controller (%d): size (%d), parts: %s", hashCode(), connectedParts.size(), getPartsListString());
+				BeefCoreLog.error("Other Controller (%d): size (%d), coords: %s", otherController.hashCode(), otherController.connectedParts.size(), otherController.getPartsListString());
+				throw new IllegalArgumentException("[" + (worldObj.isRemote?"CLIENT":"SERVER") + "] Two controllers with the same lowest part coord that somehow both have valid parts - this should never happen!"); 
+			}
+
+		}
+	}
+	
+	private int _shouldConsume(MultiblockControllerBase otherController) {
+		CoordTriplet myCoord = getLowestPartCoord();
+		CoordTriplet theirCoord = otherController.getLowestPartCoord();
+		
+		// Always consume other controllers if they have no parts - this means they're empty and can be assimilated on the cheap
+		if(theirCoord == null) { return -1; }
+		else if(myCoord == null) { return 1; }
+		else { return myCoord.compareTo(theirCoord); }
+	}
+	
+	/**
+	 * Save delegates don't move once elected, so reference coordinates depend on the order in which
+	 * parts arrived. Merges are decided by the lowest part instead, so the same machine wins regardless.
+	 * @return The lowest coordinate of any valid part in this machine, or null if there are none.
+	 */
+	private CoordTriplet getLowestPartCoord() {
+		if(lowestPartCoord == null) {
+			for(IMultiblockPart part : connectedParts) {
+				if(part.isInvalid()) { continue; }
+				if(lowestPartCoord == null || lowestPartCoord.compareTo(part.xCoord, part.yCoord, part.zCoord) > 0) {
+					lowestPartCoord = part.getWorldLocation();
+				}
+			}
+		}
+		return lowestPartCoord;
+	}
+
+	private void onPartCoordAdded(IMultiblockPart part) {
+		// If it's not known, it will be found when next needed
+		if(lowestPartCoord != null && lowestPartCoord.compareTo(part.xCoord, part.yCoord, part.zCoord) > 0) {
+			lowestPartCoord = part.getWorldLocation();
+		}
+	}
+
+	private void onPartCoordRemoved(IMultiblockPart part) {
+		if(lowestPartCoord != null && lowestPartCoord.equals(part.xCoord, part.yCoord, part.zCoord)) {
+			lowestPartCoord = null;
+		}
+	}
+	
+	private String getPartsListString() {
+		StringBuilder sb = new StringBuilder();
+		boolean first = true;
+		for(IMultiblockPart part : connectedParts) {
+			if(!first) {
+				sb.append(", ");
+			}
+			sb.append(String.format("(%d: %d, %d, %d)", part.hashCode(), part.xCoord, part.yCoord, part.zCoord));
+			first = false;
+		}
+		
+		return sb.toString();
+	}
+	
 	/**
 	 * Checks all of the parts in the controller. If any are dead or do not exist in the world, they are removed.
 	 */
@@ -688,6 +1484,7 @@ public abstract class MultiblockControllerBase {
 		}
 		
 		connectedParts.removeAll(deadParts);
+		lowestPartCoord = null;
 		BeefCoreLog.warning("[%s] Controller found %d dead parts during an audit, %d parts remain attached", worldObj.isRemote?"CLIENT":"SERVER", deadParts.size(), connectedParts.size());
 	}
 
@@ -709,23 +1506,28 @@ public abstract class MultiblockControllerBase {
 		TileEntity te;
 		IChunkProvider chunkProvider = worldObj.getChunkProvider();
 
-		// Invalidate our reference coord, we'll recalculate it shortly
-		referenceCoord = null;
-		
-		// Reset visitations and find the minimum coordinate
+		// Reset visitations, and find our save delegate, if it's still here, or else the minimum coordinate
 		Set<IMultiblockPart> deadParts = new HashSet<IMultiblockPart>();
-		CoordTriplet c;
 		IMultiblockPart referencePart = null;
+		IMultiblockPart lowestPart = null;
+		CoordTriplet lowestCoord = null;
 
 		int originalSize = connectedParts.size();
 
 		for(IMultiblockPart part : connectedParts) {
-			// This happens during chunk unload.
-			if(!chunkProvider.chunkExists(part.xCoord >> 4, part.zCoord >> 4) || part.isInvalid()) {
+			if(part.isInvalid()) {
 				deadParts.add(part);
 				onDetachBlock(part);
 				continue;
 			}
+
+			// This happens during chunk unload. Keep the part's place until the chunk returns.
+			if(!chunkProvider.chunkExists(part.xCoord >> 4, part.zCoord >> 4)) {
+				deadParts.add(part);
+				onDetachBlock(part);
+				addGhost(part.xCoord, part.yCoord, part.zCoord);
+				continue;
+			}
 			
 			if(worldObj.getTileEntity(part.xCoord, part.yCoord, part.zCoord) != part) {
 				deadParts.add(part);
@@ -734,25 +1536,33 @@ public abstract class MultiblockControllerBase {
 			}
 
 			part.setUnvisited();
-			part.forfeitMultiblockSaveDelegate();
 			
-			c = part.getWorldLocation();
-			if(referenceCoord == null) {
-				referenceCoord = c;
+			if(referenceCoord != null && referenceCoord.equals(part.xCoord, part.yCoord, part.zCoord)) {
 				referencePart = part;
 			}
-			else if(c.compareTo(referenceCoord) < 0) {
-				referenceCoord = c;
-				referencePart = part;
+			else if(lowestCoord == null || lowestCoord.compareTo(part.xCoord, part.yCoord, part.zCoord) > 0) {
+				lowestCoord = part.getWorldLocation();
+				lowestPart = part;
 			}
 		}
 		
 		connectedParts.removeAll(deadParts);
+		lowestPartCoord = null;
 		deadParts.clear();
 		
+		if(referencePart == null && lowestPart != null) {
+			// Our save delegate has gone, so elect a new one
+			referenceCoord = lowestCoord;
+			referencePart = lowestPart;
+			for(IMultiblockPart remainingPart : connectedParts) {
+				remainingPart.forfeitMultiblockSaveDelegate();
+			}
+		}
+		
 		if(referencePart == null || isEmpty()) {
 			// There are no valid parts remaining. The entire multiblock was unloaded during a chunk unload. Halt.
 			shouldCheckForDisconnections = false;
+			clearGhosts();
 			MultiblockRegistry.addDeadController(worldObj, this);
 			return null;
 		}
@@ -760,15 +1570,35 @@ public abstract class MultiblockControllerBase {
 			referencePart.becomeMultiblockSaveDelegate();
 		}
 
-		// Now visit all connected parts, breadth-first, starting from reference coord's part
+		// Now visit all connected parts, breadth-first, starting from reference coord's part.
+		// Ghosts are walked too, so parts joined only through an unloaded chunk stay connected.
 		IMultiblockPart part;
 		LinkedList<IMultiblockPart> partsToCheck = new LinkedList<IMultiblockPart>();
 		IMultiblockPart[] nearbyParts = null;
 		int visitedParts = 0;
 
+		boolean hasGhosts = hasGhosts();
+		MultiblockPartIndex partIndex = MultiblockRegistry.getPartIndex(worldObj);
+		LinkedList<Long> ghostsToCheck = new LinkedList<Long>();
+		Set<Long> visitedGhosts = new HashSet<Long>();
+		long ghost;
+		int x, y, z;
+
 		partsToCheck.add(referencePart);
 		
-		while(!partsToCheck.isEmpty()) {
+		while(!partsToCheck.isEmpty() || !ghostsToCheck.isEmpty()) {
+			if(partsToCheck.isEmpty()) {
+				ghost = ghostsToCheck.removeFirst();
+				x = CoordTriplet.unpackX(ghost);
+				y = CoordTriplet.unpackY(ghost);
+				z = CoordTriplet.unpackZ(ghost);
+
+				for(ForgeDirection dir : ForgeDirection.VALID_DIRECTIONS) {
+					visitGhostNeighbor(x + dir.offsetX, y + dir.offsetY, z + dir.offsetZ, partsToCheck, ghostsToCheck, visitedGhosts, partIndex);
+				}
+				continue;
+			}
+
 			part = partsToCheck.removeFirst();
 			part.setVisited();
 			visitedParts++;
@@ -785,6 +1615,30 @@ public abstract class MultiblockControllerBase {
 					partsToCheck.add(nearbyPart);
 				}
 			}
+
+			if(hasGhosts) {
+				for(ForgeDirection dir : ForgeDirection.VALID_DIRECTIONS) {
+					ghost = CoordTriplet.pack(part.xCoord + dir.offsetX, part.yCoord + dir.offsetY, part.zCoord + dir.offsetZ);
+					if(!visitedGhosts.contains(ghost) && hasGhost(ghost)) {
+						visitedGhosts.add(ghost);
+						ghostsToCheck.add(ghost);
+					}
+				}
+			}
+		}
+		
+		// Ghosts we couldn't reach are no longer part of this machine
+		if(hasGhosts) {
+			ArrayList<Long> unreachedGhosts = new ArrayList<Long>();
+			for(Set<Long> chunkGhosts : ghostParts.values()) {
+				for(Long chunkGhost : chunkGhosts) {
+					if(!visitedGhosts.contains(chunkGhost)) { unreachedGhosts.add(chunkGhost); }
+				}
+			}
+
+			for(Long unreachedGhost : unreachedGhosts) {
+				removeGhost(CoordTriplet.unpackX(unreachedGhost), CoordTriplet.unpackY(unreachedGhost), CoordTriplet.unpackZ(unreachedGhost));
+			}
 		}
 		
 		// Finally, remove all parts that remain disconnected.
@@ -800,6 +1654,7 @@ public abstract class MultiblockControllerBase {
 
 		// Trim any blocks that were invalid, or were removed.
 		connectedParts.removeAll(deadParts);
+		lowestPartCoord = null;
 		
 		// Cleanup. Not necessary, really.
 		deadParts.clear();
@@ -815,6 +1670,95 @@ public abstract class MultiblockControllerBase {
 		return removedParts;
 	}
 
+	/**
+	 * Breadth-first helper. Queues a ghost, or a loaded part of this machine, found next to a ghost.
+	 */
+	private void visitGhostNeighbor(int x, int y, int z, LinkedList<IMultiblockPart> partsToCheck, LinkedList<Long> ghostsToCheck, Set<Long> visitedGhosts, MultiblockPartIndex partIndex) {
+		long packed = CoordTriplet.pack(x, y, z);
+		if(hasGhost(packed)) {
+			if(visitedGhosts.add(packed)) {
+				ghostsToCheck.add(packed);
+			}
+			return;
+		}
+
+		IMultiblockPart part = partIndex != null ? partIndex.getPart(x, y, z) : null;
+		if(part != null && part.getMultiblockController() == this && !part.isVisited()) {
+			part.setVisited();
+			partsToCheck.add(part);
+		}
+	}
+
+	/**
+	 * @return True if this machine is holding the place of any parts in unloaded chunks.
+	 */
+	public boolean hasGhosts() {
+		return !ghostParts.isEmpty();
+	}
+
+	/**
+	 * @param coord Coordinate to check.
+	 * @return True if this machine is holding the place of a part, in an unloaded chunk, at that coordinate.
+	 */
+	public boolean hasGhost(CoordTriplet coord) {
+		return hasGhost(coord.pack());
+	}
+
+	private boolean hasGhost(long packed) {
+		int x = CoordTriplet.unpackX(packed);
+		int z = CoordTriplet.unpackZ(packed);
+		Set<Long> chunkGhosts = ghostParts.get(ChunkCoordIntPair.chunkXZ2Int(x >> 4, z >> 4));
+		return chunkGhosts != null && chunkGhosts.contains(packed);
+	}
+	
+	private void addGhost(int x, int y, int z) {
+		long chunkHash = ChunkCoordIntPair.chunkXZ2Int(x >> 4, z >> 4);
+		Set<Long> chunkGhosts = ghostParts.get(chunkHash);
+		if(chunkGhosts == null) {
+			chunkGhosts = new HashSet<Long>();
+			ghostParts.put(chunkHash, chunkGhosts);
+			MultiblockRegistry.addGhostChunk(worldObj, this, chunkHash);
+		}
+		
+		chunkGhosts.add(CoordTriplet.pack(x, y, z));
+	}
+	
+	private void removeGhost(int x, int y, int z) {
+		if(ghostParts.isEmpty()) { return; }
+
+		long chunkHash = ChunkCoordIntPair.chunkXZ2Int(x >> 4, z >> 4);
+		Set<Long> chunkGhosts = ghostParts.get(chunkHash);
+		if(chunkGhosts != null && chunkGhosts.remove(CoordTriplet.pack(x, y, z)) && chunkGhosts.isEmpty()) {
+			ghostParts.remove(chunkHash);
+			MultiblockRegistry.removeGhostChunk(worldObj, this, chunkHash);
+		}
+	}
+
+	/**
+	 * Forget the parts this machine was holding a place for in a chunk which has loaded without them.
+	 * @param chunkHash The hashed chunk coordinate
+	 * @return True if there were any.
+	 */
+	boolean removeGhostsInChunk(long chunkHash) {
+		if(ghostParts.remove(chunkHash) == null) { return false; }
+
+		MultiblockRegistry.removeGhostChunk(worldObj, this, chunkHash);
+		return true;
+	}
+
+	/**
+	 * Forget all of the parts this machine was holding a place for.
+	 * Called when the machine dies; parts in unloaded chunks will find a new machine when they load.
+	 */
+	public void clearGhosts() {
+		if(ghostParts.isEmpty()) { return; }
+
+		for(Long chunkHash : ghostParts.keySet()) {
+			MultiblockRegistry.removeGhostChunk(worldObj, this, chunkHash);
+		}
+		ghostParts.clear();
+	}
+
 	/**
 	 * Detach all parts. Return a set of all parts which still
 	 * have a valid tile entity. Chunk-safe.
@@ -832,6 +1776,7 @@ public abstract class MultiblockControllerBase {
 
 		Set<IMultiblockPart> detachedParts = connectedParts;
 		connectedParts = new HashSet<IMultiblockPart>();
+		lowestPartCoord = null;
 		return detachedParts;
 	}
 
@@ -869,15 +1814,28 @@ public abstract class MultiblockControllerBase {
 	 * 
 	 * On the server, this will mark the for a data-update, so that
 	 * nearby clients will receive an updated description packet from the server
-	 * after a short time. The block's chunk will also be marked dirty and the
+	 * after a short time. Requests are coalesced and sent at most once every
+	 * getMinimumSyncInterval() ticks, and only if players are watching the block.
+	 * The block's chunk will also be marked dirty and the
 	 * block's chunk will be saved to disk the next time chunks are saved.
 	 * 
 	 * On the client, this will mark the block for a rendering update.
 	 */
 	protected void markReferenceCoordForUpdate() {
-		CoordTriplet rc = getReferenceCoord();
-		if(worldObj != null && rc != null) {
-			worldObj.markBlockForUpdate(rc.x, rc.y, rc.z);
+		stateVersion++;
+
+		if(worldObj == null) { return; }
+
+		if(worldObj.isRemote) {
+			CoordTriplet rc = getReferenceCoord();
+			if(rc != null) {
+				worldObj.markBlockForUpdate(rc.x, rc.y, rc.z);
+			}
+		}
+		else {
+			// Coalesced with any other requests and sent at the end of the tick, at most once per sync interval
+			fullSyncRequested = true;
+			MultiblockRegistry.requestSync(worldObj, this);
 		}
 	}
 	
@@ -894,6 +1852,9 @@ public abstract class MultiblockControllerBase {
 	protected void markReferenceCoordDirty() {
 		if(worldObj == null || worldObj.isRemote) { return; }
 
+		// Whatever changed must be written out, not served from the save data cache
+		stateVersion++;
+
 		CoordTriplet referenceCoord = getReferenceCoord();
 		if(referenceCoord == null) { return; }
 
@@ -902,4 +1863,417 @@ public abstract class MultiblockControllerBase {
 	}
 
 	
-}
\ No newline at end of file
+
+	/* *** Sync Scheduling *** */
+	
+	/**
+	 * Override to change how often updates are sent to clients. Requests made via markReferenceCoordForUpdate()
+	 * or markSyncFieldChanged() within this many ticks of the last update are held back and sent together.
+	 * @return The minimum number of ticks between updates sent to clients. Default is 5, or four updates a second.
+	 */
+	protected int getMinimumSyncInterval() {
+		return 5;
+	}
+	
+	/**
+	 * Override to have this machine's updates sent ahead of others' when the registry limits how many
+	 * controllers may sync per tick.
+	 * @return This machine's sync priority. Higher is sooner. Default is 0.
+	 */
+	protected int getSyncPriority() {
+		return 0;
+	}
+	
+	/**
+	 * @return The world tick at which this machine's updates were last sent, or -1 if they never have been.
+	 */
+	long getLastSyncTick() {
+		return lastSyncTick;
+	}
+	
+	/**
+	 * @return True if this machine's sync interval has elapsed by the given world tick.
+	 */
+	boolean isSyncDue(long worldTick) {
+		return lastSyncTick < 0 || worldTick - lastSyncTick >= getMinimumSyncInterval();
+	}
+	
+	/**
+	 * Called by the registry to send every update requested since the last sync.
+	 * A requested full update marks the reference coordinate for a description packet, which carries
+	 * all synchronized fields too; otherwise, only the changed synchronized fields are sent.
+	 * @param worldTick The current world tick.
+	 * @param watched False if no players are watching the reference coordinate's chunk. Nothing is sent;
+	 * players who start watching will receive a fresh description packet anyway.
+	 */
+	void flushSync(long worldTick, boolean watched) {
+		lastSyncTick = worldTick;
+
+		boolean sendFullSync = fullSyncRequested;
+		fullSyncRequested = false;
+
+		NBTTagCompound topologyUpdate = null;
+		if(MultiblockRegistry.isServerTopologySyncEnabled() && hasTopologyChanged()) {
+			topologyUpdate = takeTopologyUpdate();
+		}
+
+		if(!watched || sendFullSync) {
+			lastSentSyncVersion = syncVersion;
+		}
+		if(!watched) { return; }
+
+		if(topologyUpdate != null) {
+			// Ahead of anything else, so the clients' parts are bound to the machine the rest applies to
+			CoordTriplet rc = getReferenceCoord();
+			MultiblockRegistry.sendToChunkWatchers(worldObj, new S35PacketUpdateTileEntity(rc.x, rc.y, rc.z, TOPOLOGY_ACTION, topologyUpdate), rc.getChunkX(), rc.getChunkZ());
+		}
+
+		if(sendFullSync) {
+			CoordTriplet rc = getReferenceCoord();
+			if(rc != null) {
+				worldObj.markBlockForUpdate(rc.x, rc.y, rc.z);
+			}
+		}
+		else {
+			sendSyncDelta();
+		}
+	}
+	
+	/* *** Server Topology Sync *** */
+	
+	/**
+	 * @return True if this is a client machine whose parts are bound by the server's topology packets,
+	 * rather than by the client's own connectivity checks and validation.
+	 */
+	boolean isBoundByServerTopology() {
+		return worldObj.isRemote && MultiblockRegistry.isServerTopologySyncEnabled();
+	}
+	
+	/**
+	 * @return True if this server machine's parts, reference coordinate or assembly state have changed
+	 * since its topology was last sent to clients.
+	 */
+	boolean hasTopologyChanged() {
+		if(topology == null) { return true; }
+		if(topologyStructureVersion != structureVersion || topologyAssemblyState != assemblyState) { return true; }
+
+		CoordTriplet rc = getReferenceCoord();
+		return rc != null && CoordTriplet.pack(rc.x, rc.y, rc.z) != topologyId;
+	}
+	
+	/**
+	 * Builds a topology packet payload describing the changes since the last one, and records the
+	 * current topology as sent. Everything is sent if this is the first, or the reference coordinate
+	 * has moved; in that case, the previous id is included so clients can carry their machine over.
+	 * @return Topology packet data.
+	 */
+	private NBTTagCompound takeTopologyUpdate() {
+		NBTTagCompound data = new NBTTagCompound();
+		CoordTriplet rc = getReferenceCoord();
+		long id = CoordTriplet.pack(rc.x, rc.y, rc.z);
+		Set<Long> currentTopology = getCurrentTopology();
+
+		data.setLong("id", id);
+		if(topology == null || topologyId != id) {
+			if(topology != null) {
+				data.setLong("previousId", topologyId);
+			}
+			data.setBoolean("full", true);
+			data.setByteArray("added", packCoordinates(currentTopology));
+		}
+		else {
+			List<Long> added = new ArrayList<Long>();
+			List<Long> removed = new ArrayList<Long>();
+			for(Long coord : currentTopology) {
+				if(!topology.contains(coord)) { added.add(coord); }
+			}
+			for(Long coord : topology) {
+				if(!currentTopology.contains(coord)) { removed.add(coord); }
+			}
+			data.setByteArray("added", packCoordinates(added));
+			data.setByteArray("removed", packCoordinates(removed));
+		}
+		data.setByte("state", (byte)assemblyState.ordinal());
+
+		topology = currentTopology;
+		topologyId = id;
+		topologyStructureVersion = structureVersion;
+		topologyAssemblyState = assemblyState;
+		return data;
+	}
+	
+	/**
+	 * Writes this machine's complete topology, for clients which know nothing of it yet.
+	 * @param data The tag to write into.
+	 */
+	private void writeFullTopology(NBTTagCompound data) {
+		CoordTriplet rc = getReferenceCoord();
+		data.setLong("id", CoordTriplet.pack(rc.x, rc.y, rc.z));
+		data.setBoolean("full", true);
+		data.setByteArray("added", packCoordinates(getCurrentTopology()));
+		data.setByte("state", (byte)assemblyState.ordinal());
+	}
+	
+	private Set<Long> getCurrentTopology() {
+		Set<Long> currentTopology = new HashSet<Long>(connectedParts.size() * 2);
+		for(IMultiblockPart part : connectedParts) {
+			currentTopology.add(CoordTriplet.pack(part.xCoord, part.yCoord, part.zCoord));
+		}
+		return currentTopology;
+	}
+	
+	/**
+	 * @return The packed coordinates of the parts the server last said belong to this client machine. Never null.
+	 */
+	Set<Long> getServerTopology() {
+		if(topology == null) { topology = new HashSet<Long>(); }
+		return topology;
+	}
+	
+	long getTopologyId() {
+		return topologyId;
+	}
+	
+	void setTopologyId(long id) {
+		topologyId = id;
+	}
+	
+	/**
+	 * Moves this client machine into the assembly state the server reports, without validating it.
+	 * @param state The ordinal of the server machine's assembly state.
+	 */
+	void setAssemblyStateFromServer(int state) {
+		if(state < 0 || state >= AssemblyState.values().length) { return; }
+
+		AssemblyState newState = AssemblyState.values()[state];
+		if(newState == assemblyState) { return; }
+
+		if(newState == AssemblyState.Assembled) {
+			assembleMachine(assemblyState);
+		}
+		else if(assemblyState == AssemblyState.Assembled) {
+			if(newState == AssemblyState.Paused) {
+				pauseMachine();
+			}
+			else {
+				disassembleMachine();
+			}
+		}
+		else {
+			// Paused and disassembled machines look the same from outside
+			assemblyState = newState;
+			stateVersion++;
+		}
+	}
+	
+	/**
+	 * Packs coordinates, as packed by CoordTriplet.pack(), into a byte array for NBT, sorted and
+	 * delta-coded by CompactDataWriter.writeCoordinates(); neighboring parts cost a byte or two each.
+	 */
+	static byte[] packCoordinates(Collection<Long> coords) {
+		long[] sorted = new long[coords.size()];
+		int i = 0;
+		for(Long coord : coords) {
+			sorted[i++] = coord;
+		}
+
+		CompactDataWriter writer = new CompactDataWriter(0, sorted.length * 2 + 8);
+		writer.writeCoordinates(sorted);
+		return writer.toByteArray();
+	}
+	
+	/**
+	 * @return The coordinates packed by packCoordinates(), in ascending order. Never null;
+	 * empty if there are none.
+	 * @throws IllegalArgumentException if the data is malformed
+	 */
+	static long[] unpackCoordinates(byte[] packed) {
+		if(packed.length == 0) { return new long[0]; }
+		return new CompactDataReader(packed).readCoordinates();
+	}
+	
+	/* *** Description Caching *** */
+	
+	/**
+	 * @return A number which changes whenever this machine's structure, assembly state or game data
+	 * may have changed. Game data changes are detected via markReferenceCoordForUpdate(),
+	 * markReferenceCoordDirty(), updateServer() returning true and markSyncFieldChanged().
+	 * Cached description and save data are discarded when it changes.
+	 */
+	public int getStateVersion() {
+		return stateVersion;
+	}
+	
+	/**
+	 * Call if something which formatDescriptionPacket() or writeToNBT() writes has changed in a way the
+	 * state version doesn't otherwise notice, so the cached description and save data are discarded.
+	 */
+	protected void markStateChanged() {
+		stateVersion++;
+	}
+	
+	/**
+	 * Override to return true to have your machine's description data encoded once per state version
+	 * and shared between every watcher, with the save delegate sending it in a single shared packet.
+	 * Only do so if everything formatDescriptionPacket() writes changes only alongside updateServer()
+	 * returning true or a call to markReferenceCoordForUpdate(), markSyncFieldChanged() or
+	 * markStateChanged(), and if none of your parts need description packets of their own: once this
+	 * returns true, parts other than the save delegate send none, and encodeDescriptionPacket() is not called.
+	 * @return True if this machine's description data may be shared until the state version changes. Default is false.
+	 */
+	protected boolean shouldCacheDescriptionData() { return false; }
+	
+	/**
+	 * @return This machine's description data, as written by formatDescriptionPacket() plus every
+	 * synchronized field. If shouldCacheDescriptionData() is true, it is reused until the state
+	 * version changes, so do not modify it.
+	 */
+	public NBTTagCompound getDescriptionData() {
+		if(!shouldCacheDescriptionData() || cachedDescriptionData == null || cachedDescriptionDataVersion != stateVersion) {
+			NBTTagCompound data = new NBTTagCompound();
+			formatDescriptionPacket(data);
+
+			NBTTagCompound syncData = new NBTTagCompound();
+			writeAllSyncFields(syncData);
+			data.setTag("multiblockSync", syncData);
+
+			if(MultiblockRegistry.isServerTopologySyncEnabled() && !worldObj.isRemote) {
+				NBTTagCompound topologyData = new NBTTagCompound();
+				writeFullTopology(topologyData);
+				data.setTag("multiblockTopology", topologyData);
+			}
+
+			if(!shouldCacheDescriptionData()) {
+				return data;
+			}
+
+			cachedDescriptionData = data;
+			cachedDescriptionDataVersion = stateVersion;
+		}
+		return cachedDescriptionData;
+	}
+	
+	/**
+	 * @return A description packet carrying nothing but this machine's description data, for the
+	 * save delegate to send. Only used if shouldCacheDescriptionData() is true; the same packet is
+	 * handed out until the state version changes.
+	 */
+	S35PacketUpdateTileEntity getDescriptionPacket(IMultiblockPart saveDelegate) {
+		if(cachedDescriptionPacket == null || cachedDescriptionPacketVersion != stateVersion ||
+				!cachedDescriptionPacketCoord.equals(saveDelegate.xCoord, saveDelegate.yCoord, saveDelegate.zCoord)) {
+			NBTTagCompound packetData = new NBTTagCompound();
+			packetData.setTag("multiblockData", getDescriptionData());
+
+			cachedDescriptionPacket = new S35PacketUpdateTileEntity(saveDelegate.xCoord, saveDelegate.yCoord, saveDelegate.zCoord, 0, packetData);
+			cachedDescriptionPacketVersion = stateVersion;
+			cachedDescriptionPacketCoord = new CoordTriplet(saveDelegate.xCoord, saveDelegate.yCoord, saveDelegate.zCoord);
+		}
+		return cachedDescriptionPacket;
+	}
+	
+	/* *** Delta Sync *** */
+	
+	/**
+	 * Override this to synchronize some of your machine's state to clients field-by-field,
+	 * rather than via formatDescriptionPacket(). Only fields which have changed are sent,
+	 * at the end of each server tick; clients which start watching the machine receive every
+	 * field in the description packet.
+	 * @return The number of fields to synchronize, at most MAX_SYNC_FIELDS. Defaults to 0.
+	 */
+	protected int getSyncFieldCount() {
+		return 0;
+	}
+	
+	/**
+	 * Write a single synchronized field. Use keys which don't clash with your other fields.
+	 * @param field The field to write, from 0 to getSyncFieldCount() - 1.
+	 * @param data The tag into which the field should be written.
+	 */
+	protected void writeSyncField(int field, NBTTagCompound data) {
+	}
+	
+	/**
+	 * Read a single synchronized field, as written by writeSyncField(). Called on the client.
+	 * @param field The field to read, from 0 to getSyncFieldCount() - 1.
+	 * @param data The tag containing the field.
+	 */
+	protected void readSyncField(int field, NBTTagCompound data) {
+	}
+	
+	/**
+	 * Call on the server whenever a synchronized field changes. It will be sent to watching clients
+	 * at the end of the tick, along with any other fields which changed, subject to getMinimumSyncInterval().
+	 * @param field The field which changed, from 0 to getSyncFieldCount() - 1.
+	 */
+	protected void markSyncFieldChanged(int field) {
+		if(syncFieldVersions == null) {
+			syncFieldVersions = new int[Math.min(getSyncFieldCount(), MAX_SYNC_FIELDS)];
+		}
+
+		syncFieldVersions[field] = ++syncVersion;
+		stateVersion++;
+
+		if(worldObj != null && !worldObj.isRemote) {
+			MultiblockRegistry.requestSync(worldObj, this);
+		}
+	}
+	
+	/**
+	 * Writes every synchronized field, for a client which knows nothing of this machine yet.
+	 * @param data The tag to write into.
+	 */
+	public void writeAllSyncFields(NBTTagCompound data) {
+		writeSyncFieldsSince(data, -1);
+	}
+	
+	/**
+	 * Reads whichever synchronized fields are present.
+	 * @param data A tag written by writeAllSyncFields(), or received in a delta sync packet.
+	 */
+	public void readSyncFields(NBTTagCompound data) {
+		long fields = data.getLong("fields");
+		int fieldCount = Math.min(getSyncFieldCount(), MAX_SYNC_FIELDS);
+		for(int field = 0; field < fieldCount; field++) {
+			if((fields & (1L << field)) != 0) {
+				readSyncField(field, data);
+			}
+		}
+	}
+	
+	/**
+	 * @return True if any synchronized fields have changed since they were last sent to clients.
+	 */
+	protected boolean hasUnsentSyncFields() {
+		return syncVersion != lastSentSyncVersion;
+	}
+	
+	/**
+	 * Sends the synchronized fields which have changed since the last call to clients watching the
+	 * reference coordinate's chunk, as a tile entity packet with the SYNC_DELTA_ACTION action code.
+	 */
+	private void sendSyncDelta() {
+		if(worldObj.isRemote || !hasUnsentSyncFields()) { return; }
+
+		CoordTriplet rc = getReferenceCoord();
+		if(rc == null) { return; }
+
+		NBTTagCompound data = new NBTTagCompound();
+		writeSyncFieldsSince(data, lastSentSyncVersion);
+		lastSentSyncVersion = syncVersion;
+
+		MultiblockRegistry.sendToChunkWatchers(worldObj, new S35PacketUpdateTileEntity(rc.x, rc.y, rc.z, SYNC_DELTA_ACTION, data), rc.getChunkX(), rc.getChunkZ());
+	}
+	
+	private void writeSyncFieldsSince(NBTTagCompound data, int sinceVersion) {
+		int fieldCount = Math.min(getSyncFieldCount(), MAX_SYNC_FIELDS);
+		long fields = 0;
+		for(int field = 0; field < fieldCount; field++) {
+			int fieldVersion = syncFieldVersions == null ? 0 : syncFieldVersions[field];
+			if(fieldVersion > sinceVersion) {
+				writeSyncField(field, data);
+				fields |= 1L << field;
+			}
+		}
+		data.setLong("fields", fields);
+	}
+}
@@ -0,0 +1,418 @@
+package erogenousbeef.core.multiblock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import erogenousbeef.core.common.BeefCoreLog;
+
+/**
+ * A per-world sidecar store for bulk machine data, such as heat maps, fluid grids and inventories,
+ * kept out of tile entity NBT so that it isn't rewritten along with its chunk on every save.
+ * Only the machine's persistent id is stored in NBT.
+ *
+ * Machines' data lives in region files in the world's save directory, under beefcore/, each holding
+ * the records of REGION_SIZE consecutive ids. A region file begins with a one-page table giving each
+ * record's first page and page count; records are whole pages, and move to a free run of pages when
+ * they outgrow their own. Controllers read and write their record in place through ByteBuffer views
+ * of its mapping; see MultiblockControllerBase.getBulkData(). Changes reach the disk when the
+ * operating system writes back the mapped pages, and are forced out whenever the world saves.
+ *
+ * Released records aren't deleted straight away, as chunks saved earlier may still refer to them.
+ * A release is only written down when the world saves, along with the chunks which no longer refer
+ * to the record, and its pages are reclaimed when the store is next opened, once every chunk saved
+ * in this session is on disk. Until then, a part loaded with a reference to a released record
+ * takes it back; see retain().
+ *
+ * Server only, and, like the rest of the registry's bookkeeping, only touched from the world's tick thread.
+ *
+ * @author Erogenous Beef
+ */
+public class MultiblockDataStore {
+
+	// Sizes are rounded up to whole pages, so small growths don't remap every time
+	private static final int PAGE_SIZE = 4096;
+
+	/** The number of ids whose records share a region file. */
+	public static final int REGION_SIZE = 256;
+
+	// Each region's table: first page, page count and flags for each of its ids; REGION_SIZE entries fill its first page
+	private static final int ENTRY_SIZE = 16;
+	private static final int FLAG_RELEASED = 1;
+
+	private static final String ID_FILE_NAME = "ids.dat";
+	private static final String REGION_PREFIX = "region.";
+	private static final String REGION_SUFFIX = ".dat";
+
+	private final File directory;
+	private HashMap<Long, MappedByteBuffer> buffers;
+	private HashMap<Long, Region> regions;
+	private Set<Long> pendingReleases;
+	private MappedByteBuffer idCounter;
+	private boolean opened;
+
+	/**
+	 * @param directory The directory to keep the data in. Created when first needed.
+	 */
+	public MultiblockDataStore(File directory) {
+		this.directory = directory;
+		buffers = new HashMap<Long, MappedByteBuffer>();
+		regions = new HashMap<Long, Region>();
+		pendingReleases = new HashSet<Long>();
+		idCounter = null;
+		opened = false;
+	}
+
+	/**
+	 * @return A new persistent id, never 0, unique within this store.
+	 * @throws IOException if the id counter could not be read or written
+	 */
+	public long allocateId() throws IOException {
+		open();
+		if(idCounter == null) {
+			idCounter = map(new File(ensureDirectory(), ID_FILE_NAME), 0, 8);
+		}
+
+		long id = idCounter.getLong(0) + 1;
+		idCounter.putLong(0, id);
+		return id;
+	}
+
+	/**
+	 * Maps a machine's data, creating or growing its record as needed. New space is zeroed.
+	 * The view returned has its own position and limit, starting at 0 and minimumSize; its capacity
+	 * may be larger. After asking for a larger size, stop using views returned earlier.
+	 * @param id The machine's persistent id
+	 * @param minimumSize The number of bytes needed
+	 * @return A view of the machine's data.
+	 * @throws IOException if the data could not be mapped
+	 */
+	public ByteBuffer getBuffer(long id, int minimumSize) throws IOException {
+		MappedByteBuffer buffer = buffers.get(id);
+		if(buffer == null || buffer.capacity() < minimumSize) {
+			if(buffer != null) {
+				buffer.force();
+			}
+			buffer = mapRecord(id, minimumSize);
+			buffers.put(id, buffer);
+		}
+
+		ByteBuffer view = buffer.duplicate();
+		view.limit(minimumSize);
+		return view;
+	}
+
+	/**
+	 * Maps a machine's existing data, without creating any.
+	 * @param id The machine's persistent id
+	 * @return A view of all of the machine's data, or null if it has none.
+	 * @throws IOException if the data could not be mapped
+	 */
+	public ByteBuffer getExistingBuffer(long id) throws IOException {
+		if(!buffers.containsKey(id)) {
+			if(!hasData(id)) { return null; }
+			buffers.put(id, mapRecord(id, 0));
+		}
+		return buffers.get(id).duplicate();
+	}
+
+	/**
+	 * @return True if the machine has data in this store which hasn't been released.
+	 */
+	public boolean hasData(long id) {
+		if(buffers.containsKey(id)) { return true; }
+		if(pendingReleases.contains(id)) { return false; }
+
+		Region region = getRegionOrNull(id);
+		return region != null && region.getPageCount(slotOf(id)) > 0 && (region.getFlags(slotOf(id)) & FLAG_RELEASED) == 0;
+	}
+
+	/**
+	 * Releases a machine's data. Stop using any views of it first. The data is kept on disk until
+	 * the store is next opened, in case a chunk saved before the release refers to it.
+	 * @param id The machine's persistent id
+	 */
+	public void release(long id) {
+		buffers.remove(id);
+
+		Region region = getRegionOrNull(id);
+		if(region != null && region.getPageCount(slotOf(id)) > 0) {
+			pendingReleases.add(id);
+		}
+	}
+
+	/**
+	 * Takes back a machine's data which has been released, but not yet reclaimed, because a part
+	 * has been loaded whose saved data still refers to it.
+	 * @param id The machine's persistent id
+	 * @return True if the machine has data in this store.
+	 */
+	public boolean retain(long id) {
+		pendingReleases.remove(id);
+
+		Region region = getRegionOrNull(id);
+		if(region == null || region.getPageCount(slotOf(id)) <= 0) { return false; }
+
+		int slot = slotOf(id);
+		if((region.getFlags(slot) & FLAG_RELEASED) != 0) {
+			region.setFlags(slot, region.getFlags(slot) & ~FLAG_RELEASED);
+		}
+		return true;
+	}
+
+	/**
+	 * Forces all mapped data out to disk, and writes down the releases since the last flush.
+	 * Called when the world saves.
+	 */
+	public void flush() {
+		for(long id : pendingReleases) {
+			Region region = getRegionOrNull(id);
+			if(region != null) {
+				region.setFlags(slotOf(id), region.getFlags(slotOf(id)) | FLAG_RELEASED);
+			}
+		}
+		pendingReleases.clear();
+
+		for(MappedByteBuffer buffer : buffers.values()) {
+			buffer.force();
+		}
+		for(Region region : regions.values()) {
+			region.table.force();
+		}
+		if(idCounter != null) {
+			idCounter.force();
+		}
+	}
+
+	/**
+	 * Flushes everything and lets go of all mappings. The store may still be used afterwards,
+	 * and will reclaim the records released so far when it is.
+	 */
+	public void close() {
+		flush();
+		buffers.clear();
+		regions.clear();
+		idCounter = null;
+		opened = false;
+	}
+
+	/* *** PRIVATE HELPERS *** */
+
+	private static long regionOf(long id) {
+		return id / REGION_SIZE;
+	}
+
+	private static int slotOf(long id) {
+		return (int)(id % REGION_SIZE);
+	}
+
+	/**
+	 * Opens every region file once, reclaiming the records released in earlier sessions.
+	 */
+	private void open() {
+		if(opened) { return; }
+		opened = true;
+
+		File[] files = directory.listFiles();
+		if(files == null) { return; }
+
+		for(File file : files) {
+			String name = file.getName();
+			if(!name.startsWith(REGION_PREFIX) || !name.endsWith(REGION_SUFFIX)) { continue; }
+
+			try {
+				long regionIndex = Long.parseLong(name.substring(REGION_PREFIX.length(), name.length() - REGION_SUFFIX.length()), 16);
+				getRegion(regionIndex, false);
+			}
+			catch(NumberFormatException e) {
+				BeefCoreLog.warning("Ignoring unexpected file %s in the multiblock data directory", file);
+			}
+			catch(IOException e) {
+				BeefCoreLog.error("Could not open multiblock data region %s: %s", file, e.getMessage());
+			}
+		}
+	}
+
+	private Region getRegionOrNull(long id) {
+		try {
+			return getRegion(regionOf(id), false);
+		}
+		catch(IOException e) {
+			BeefCoreLog.error("Could not open multiblock data region for id %d: %s", id, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return The region, opened if need be, or null if it doesn't exist and create is false.
+	 */
+	private Region getRegion(long regionIndex, boolean create) throws IOException {
+		open();
+
+		Region region = regions.get(regionIndex);
+		if(region != null) { return region; }
+
+		File file = new File(directory, String.format("%s%x%s", REGION_PREFIX, regionIndex, REGION_SUFFIX));
+		if(!create && !file.exists()) { return null; }
+
+		region = new Region(file, map(file, 0, PAGE_SIZE));
+		regions.put(regionIndex, region);
+		return region;
+	}
+
+	/**
+	 * Maps a machine's record, first moving or growing it if it has fewer than minimumSize bytes.
+	 */
+	private MappedByteBuffer mapRecord(long id, int minimumSize) throws IOException {
+		Region region = getRegion(regionOf(id), true);
+		int slot = slotOf(id);
+		int firstPage = region.getFirstPage(slot);
+		int pageCount = region.getPageCount(slot);
+		int neededPages = (int)Math.max(pagesFor(minimumSize), 1);
+
+		if(pageCount >= neededPages) {
+			return map(region.file, (long)firstPage * PAGE_SIZE, (long)pageCount * PAGE_SIZE);
+		}
+
+		long size = (long)neededPages * PAGE_SIZE;
+		if(size > Integer.MAX_VALUE) {
+			throw new IOException(String.format("Multiblock data for id %d would be too large (%d bytes)", id, minimumSize));
+		}
+
+		MappedByteBuffer buffer;
+		int nextUsedPage = pageCount > 0 ? region.usedPages.nextSetBit(firstPage + pageCount) : -1;
+		if(pageCount > 0 && (nextUsedPage < 0 || nextUsedPage >= firstPage + neededPages)) {
+			// There's room to grow in place
+			region.usedPages.set(firstPage + pageCount, firstPage + neededPages);
+			buffer = map(region.file, (long)firstPage * PAGE_SIZE, size);
+			zero(buffer, pageCount * PAGE_SIZE);
+		}
+		else {
+			int newFirstPage = region.allocatePages(neededPages);
+			buffer = map(region.file, (long)newFirstPage * PAGE_SIZE, size);
+			if(pageCount > 0) {
+				ByteBuffer oldData = map(region.file, (long)firstPage * PAGE_SIZE, (long)pageCount * PAGE_SIZE);
+				buffer.put(oldData);
+				buffer.clear();
+			}
+			zero(buffer, pageCount * PAGE_SIZE);
+			firstPage = newFirstPage;
+		}
+
+		// Written last, so the table never refers to pages which haven't been filled in
+		region.setEntry(slot, firstPage, neededPages, 0);
+		return buffer;
+	}
+
+	private static long pagesFor(long size) {
+		return (size + PAGE_SIZE - 1) / PAGE_SIZE;
+	}
+
+	private static void zero(ByteBuffer buffer, int from) {
+		byte[] zeroes = new byte[Math.min(PAGE_SIZE, Math.max(buffer.capacity() - from, 0))];
+		ByteBuffer view = buffer.duplicate();
+		view.position(from);
+		while(view.hasRemaining()) {
+			view.put(zeroes, 0, Math.min(zeroes.length, view.remaining()));
+		}
+	}
+
+	private File ensureDirectory() throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create multiblock data directory " + directory);
+		}
+		return directory;
+	}
+
+	private MappedByteBuffer map(File file, long offset, long size) throws IOException {
+		ensureDirectory();
+		long mappedSize = Math.max(pagesFor(size), 1) * PAGE_SIZE;
+		if(mappedSize > Integer.MAX_VALUE) {
+			throw new IOException(String.format("Multiblock data file %s would be too large (%d bytes)", file, size));
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			// The mapping outlives the channel
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, offset, mappedSize);
+		}
+		finally {
+			try {
+				raf.close();
+			}
+			catch(IOException e) {
+				BeefCoreLog.warning("Could not close multiblock data file %s: %s", file, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * An open region file: its table, mapped, and which of its pages are in use.
+	 */
+	private static class Region {
+		final File file;
+		final MappedByteBuffer table;
+		final BitSet usedPages;
+
+		Region(File file, MappedByteBuffer table) {
+			this.file = file;
+			this.table = table;
+			usedPages = new BitSet();
+			usedPages.set(0);
+
+			for(int slot = 0; slot < REGION_SIZE; slot++) {
+				if(getPageCount(slot) <= 0) { continue; }
+
+				if((getFlags(slot) & FLAG_RELEASED) != 0) {
+					// Released in an earlier session; every chunk which referred to it has been saved since
+					setEntry(slot, 0, 0, 0);
+				}
+				else {
+					usedPages.set(getFirstPage(slot), getFirstPage(slot) + getPageCount(slot));
+				}
+			}
+		}
+
+		int getFirstPage(int slot) { return table.getInt(slot * ENTRY_SIZE); }
+		int getPageCount(int slot) { return table.getInt(slot * ENTRY_SIZE + 4); }
+		int getFlags(int slot) { return table.getInt(slot * ENTRY_SIZE + 8); }
+
+		void setFlags(int slot, int flags) {
+			table.putInt(slot * ENTRY_SIZE + 8, flags);
+		}
+
+		void setEntry(int slot, int firstPage, int pageCount, int flags) {
+			int oldFirstPage = getFirstPage(slot);
+			int oldPageCount = getPageCount(slot);
+			if(oldPageCount > 0 && oldFirstPage != firstPage) {
+				usedPages.clear(oldFirstPage, oldFirstPage + oldPageCount);
+			}
+
+			table.putInt(slot * ENTRY_SIZE, firstPage);
+			table.putInt(slot * ENTRY_SIZE + 4, pageCount);
+			table.putInt(slot * ENTRY_SIZE + 8, flags);
+		}
+
+		/**
+		 * @return The first page of a free run of the given length, now marked used.
+		 */
+		int allocatePages(int count) {
+			int start = 1;
+			while(true) {
+				start = usedPages.nextClearBit(start);
+				int end = usedPages.nextSetBit(start);
+				if(end < 0 || end - start >= count) { break; }
+				start = end;
+			}
+			usedPages.set(start, start + count);
+			return start;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package erogenousbeef.core.multiblock;
 
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.event.world.BlockEvent;
 import net.minecraftforge.event.world.ChunkEvent;
 import net.minecraftforge.event.world.WorldEvent;
 import cpw.mods.fml.common.eventhandler.EventPriority;
@@ -21,6 +22,29 @@ public class MultiblockEventHandler {
 		MultiblockRegistry.onChunkLoaded(world, chunk.xPosition, chunk.zPosition);
 	}
 
+	// Fired before the chunk is saved and before its tile entities get onChunkUnload()
+	@SubscribeEvent(priority = EventPriority.NORMAL)
+	public void onChunkUnload(ChunkEvent.Unload unloadEvent) {
+		MultiblockRegistry.onChunkUnloaded(unloadEvent.world, unloadEvent.getChunk());
+	}
+
+	// Blocks changing inside assembled machines are re-checked individually
+	@SubscribeEvent(priority = EventPriority.NORMAL)
+	public void onBlockBreak(BlockEvent.BreakEvent breakEvent) {
+		MultiblockRegistry.onBlockChanged(breakEvent.world, breakEvent.x, breakEvent.y, breakEvent.z);
+	}
+
+	@SubscribeEvent(priority = EventPriority.NORMAL)
+	public void onBlockPlace(BlockEvent.PlaceEvent placeEvent) {
+		MultiblockRegistry.onBlockChanged(placeEvent.world, placeEvent.x, placeEvent.y, placeEvent.z);
+	}
+
+	// Bulk machine data is flushed alongside the world's own save
+	@SubscribeEvent(priority = EventPriority.NORMAL)
+	public void onWorldSave(WorldEvent.Save saveWorldEvent) {
+		MultiblockRegistry.onWorldSaved(saveWorldEvent.world);
+	}
+
 	// Cleanup, for nice memory usageness
 	@SubscribeEvent(priority = EventPriority.NORMAL)
 	public void onWorldUnload(WorldEvent.Unload unloadWorldEvent) {
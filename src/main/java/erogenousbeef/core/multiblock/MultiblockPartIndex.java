@@ -0,0 +1,155 @@
+package erogenousbeef.core.multiblock;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import erogenousbeef.core.common.CoordTriplet;
+
+/**
+ * An index of where multiblock parts are in a world, kept by the world registry.
+ * Each 16x16x16 chunk section holding parts gets a bitmap of occupied positions and
+ * a parallel array of part references, so "is there a part here?" is a bit test and
+ * neighbor lookups are array reads, with no chunk or tile entity map lookups.
+ *
+ * Parts are added when the registry processes them as orphans, and removed when they
+ * leave the world. Parts which haven't been processed yet, e.g. orphans, parts in an open
+ * bulk edit or in a chunk which loaded this tick, aren't listed, so a miss doesn't mean there
+ * is no part there; look in the world if that matters. Like the rest of the registry's bookkeeping, this is only touched
+ * from the world's tick thread.
+ *
+ * @author Erogenous Beef
+ */
+public class MultiblockPartIndex {
+
+	private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+	private static class Section {
+		long[] occupancy = new long[SECTION_VOLUME / 64];
+		IMultiblockPart[] parts = new IMultiblockPart[SECTION_VOLUME];
+		int size = 0;
+	}
+
+	// Sections, indexed by the packed section coordinate
+	private HashMap<Long, Section> sections;
+
+	// Neighbor lookups mostly stay within one section
+	private long lastSectionKey;
+	private Section lastSection;
+
+	public MultiblockPartIndex() {
+		sections = new HashMap<Long, Section>();
+		lastSection = null;
+	}
+
+	/**
+	 * Record a part at its world location, replacing anything previously recorded there.
+	 * @param part The part to record.
+	 */
+	public void add(IMultiblockPart part) {
+		int x = part.xCoord, y = part.yCoord, z = part.zCoord;
+		Section section = getSection(x, y, z);
+		if(section == null) {
+			section = new Section();
+			long key = getSectionKey(x, y, z);
+			sections.put(key, section);
+			lastSectionKey = key;
+			lastSection = section;
+		}
+
+		int i = getIndex(x, y, z);
+		if(section.parts[i] == null) {
+			section.occupancy[i >> 6] |= 1L << (i & 63);
+			section.size++;
+		}
+		section.parts[i] = part;
+	}
+
+	/**
+	 * Forget a part. Does nothing if a different part has since been recorded at its location.
+	 * @param part The part to forget.
+	 */
+	public void remove(IMultiblockPart part) {
+		int x = part.xCoord, y = part.yCoord, z = part.zCoord;
+		Section section = getSection(x, y, z);
+		if(section == null) { return; }
+
+		int i = getIndex(x, y, z);
+		if(section.parts[i] != part) { return; }
+
+		section.parts[i] = null;
+		section.occupancy[i >> 6] &= ~(1L << (i & 63));
+		section.size--;
+
+		if(section.size <= 0) {
+			sections.remove(getSectionKey(x, y, z));
+			if(lastSection == section) { lastSection = null; }
+		}
+	}
+
+	/**
+	 * @return True if a part is recorded at the given coordinate.
+	 */
+	public boolean hasPart(int x, int y, int z) {
+		Section section = getSection(x, y, z);
+		if(section == null) { return false; }
+
+		int i = getIndex(x, y, z);
+		return (section.occupancy[i >> 6] & (1L << (i & 63))) != 0;
+	}
+
+	/**
+	 * @return The part recorded at the given coordinate, or null if there is none.
+	 */
+	public IMultiblockPart getPart(int x, int y, int z) {
+		Section section = getSection(x, y, z);
+		if(section == null) { return null; }
+		return section.parts[getIndex(x, y, z)];
+	}
+
+	/**
+	 * @return The recorded parts adjacent to the given coordinate. Never null.
+	 */
+	public IMultiblockPart[] getNeighboringParts(int x, int y, int z) {
+		IMultiblockPart[] neighbors = new IMultiblockPart[6];
+		int count = 0;
+		IMultiblockPart part;
+
+		if((part = getPart(x-1, y, z)) != null) { neighbors[count++] = part; }
+		if((part = getPart(x, y-1, z)) != null) { neighbors[count++] = part; }
+		if((part = getPart(x, y, z-1)) != null) { neighbors[count++] = part; }
+		if((part = getPart(x, y, z+1)) != null) { neighbors[count++] = part; }
+		if((part = getPart(x, y+1, z)) != null) { neighbors[count++] = part; }
+		if((part = getPart(x+1, y, z)) != null) { neighbors[count++] = part; }
+
+		return count == neighbors.length ? neighbors : Arrays.copyOf(neighbors, count);
+	}
+
+	public void clear() {
+		sections.clear();
+		lastSection = null;
+	}
+
+	/* *** PRIVATE HELPERS *** */
+
+	private Section getSection(int x, int y, int z) {
+		long key = getSectionKey(x, y, z);
+		if(lastSection != null && lastSectionKey == key) {
+			return lastSection;
+		}
+
+		Section section = sections.get(key);
+		if(section != null) {
+			lastSectionKey = key;
+			lastSection = section;
+		}
+		return section;
+	}
+
+	private static long getSectionKey(int x, int y, int z) {
+		return CoordTriplet.pack(x >> 4, y >> 4, z >> 4);
+	}
+
+	private static int getIndex(int x, int y, int z) {
+		return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+	}
+}
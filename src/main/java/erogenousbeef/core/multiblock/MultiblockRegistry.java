@@ -3,8 +3,12 @@ package erogenousbeef.core.multiblock;
 import java.util.HashMap;
 import java.util.Set;
 
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.Packet;
 import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
 import erogenousbeef.core.common.BeefCoreLog;
+import erogenousbeef.core.common.CoordTriplet;
 
 /**
  * This is a very static singleton registry class which directs incoming events to sub-objects, which
@@ -14,6 +18,18 @@ import erogenousbeef.core.common.BeefCoreLog;
 public class MultiblockRegistry {
 	// World > WorldRegistry map
 	private static HashMap<World, MultiblockWorldRegistry> registries = new HashMap<World, MultiblockWorldRegistry>();
+
+	// Applied to every world registry; see setMaximumSyncsPerTick()
+	private static int maximumSyncsPerTick = 0;
+
+	// Applied to every world registry; see setMaximumValidationDelay()
+	private static int maximumValidationDelay = MultiblockWorldRegistry.DEFAULT_MAXIMUM_VALIDATION_DELAY;
+
+	// See setServerTopologySync()
+	private static boolean serverTopologySync = false;
+
+	// See setWorldIndexEnabled()
+	private static boolean worldIndexEnabled = false;
 	
 	/**
 	 * Called before Tile Entities are ticked in the world. Do bookkeeping here.
@@ -39,6 +55,32 @@ public class MultiblockRegistry {
 		}
 	}
 
+	/**
+	 * Called when the world is about to unload a chunk, before the chunk is saved.
+	 * @param world The world which is unloading a chunk
+	 * @param chunk The chunk being unloaded
+	 */
+	public static void onChunkUnloaded(World world, Chunk chunk) {
+		if(registries.containsKey(world)) {
+			registries.get(world).onChunkUnloaded(chunk);
+		}
+	}
+
+	/**
+	 * Call when a block has changed, so that any assembled machine whose bounding box contains it
+	 * can re-check that one position. Mods which change blocks without firing Forge's block events
+	 * (e.g. fluids, machines, world editors) should call this themselves.
+	 * @param world The world in which the block changed
+	 * @param x X coordinate of the changed block
+	 * @param y Y coordinate of the changed block
+	 * @param z Z coordinate of the changed block
+	 */
+	public static void onBlockChanged(World world, int x, int y, int z) {
+		if(registries.containsKey(world)) {
+			registries.get(world).onBlockChanged(x, y, z);
+		}
+	}
+
 	/**
 	 * Register a new part in the system. The part has been created either through user action or via a chunk loading.
 	 * @param world The world into which this part is loading.
@@ -61,7 +103,21 @@ public class MultiblockRegistry {
 		
 	}
 
-	
+	/**
+	 * Call when an attached part is removed from the world, before detaching it from its machine.
+	 * @param world The world from which a multiblock part is being removed.
+	 * @param part The part being removed.
+	 * @return True if the part is within an open bulk edit, and will be detached from its machine when
+	 * the edit ends. False if it must be detached now.
+	 */
+	public static boolean deferPartRemoval(World world, IMultiblockPart part) {
+		if(registries.containsKey(world)) {
+			return registries.get(world).deferPartRemoval(part);
+		}
+		return false;
+	}
+
+
 	/**
 	 * Called whenever a world is unloaded. Unload the relevant registry, if we have one.
 	 * @param world The world being unloaded.
@@ -73,6 +129,53 @@ public class MultiblockRegistry {
 		}
 	}
 
+	/**
+	 * Called when a world has saved.
+	 * @param world The world which was saved.
+	 */
+	public static void onWorldSaved(World world) {
+		if(registries.containsKey(world)) {
+			registries.get(world).onWorldSaved();
+		}
+	}
+
+	/**
+	 * @param world The world whose data store you wish to retrieve.
+	 * @return The sidecar store for bulk machine data in the given world, or null if there is none,
+	 * e.g. on the client.
+	 */
+	public static MultiblockDataStore getDataStore(World world) {
+		if(registries.containsKey(world)) {
+			return registries.get(world).getDataStore();
+		}
+		return null;
+	}
+
+	/**
+	 * Enable or disable the persistent world index. When enabled, every machine on the server is
+	 * given a persistent id and listed in its world's MultiblockWorldIndex, which is kept on disk so
+	 * machines can be found without loading their chunks. Set this during your mod's initialization.
+	 * @param enabled True to enable the world index.
+	 */
+	public static void setWorldIndexEnabled(boolean enabled) {
+		worldIndexEnabled = enabled;
+	}
+
+	public static boolean isWorldIndexEnabled() {
+		return worldIndexEnabled;
+	}
+
+	/**
+	 * May be called before any of the world's machines have loaded, e.g. from WorldEvent.Load,
+	 * to find machines in unloaded areas or the chunks to load them ahead of players.
+	 * @param world The world whose index you wish to retrieve.
+	 * @return The index of machines in the given world, or null if the world index is disabled or on the client.
+	 */
+	public static MultiblockWorldIndex getWorldIndex(World world) {
+		if(world.isRemote || !worldIndexEnabled) { return null; }
+		return getOrCreateRegistry(world).getWorldIndex();
+	}
+
 	/**
 	 * Call to mark a controller as dirty. Dirty means that parts have
 	 * been added or removed this tick.
@@ -104,6 +207,133 @@ public class MultiblockRegistry {
 		}
 	}
 
+	/**
+	 * Call before placing or removing a large number of multiblock parts within a region, e.g. when
+	 * pasting a schematic. Until endBulkEdit() is called, parts added within the region are not given to
+	 * any machine, parts removed within the region stay attached to their machines, and machines within
+	 * the region are not checked. Sessions still open after MultiblockBulkEditSession.MAXIMUM_DURATION
+	 * ticks are ended automatically.
+	 * @param world The world being edited
+	 * @param min Minimum coordinate of the region, inclusive
+	 * @param max Maximum coordinate of the region, inclusive
+	 * @return The session, which must be passed to endBulkEdit() when the edit is complete.
+	 */
+	public static MultiblockBulkEditSession beginBulkEdit(World world, CoordTriplet min, CoordTriplet max) {
+		return getOrCreateRegistry(world).beginBulkEdit(min, max);
+	}
+
+	/**
+	 * Call once a bulk edit is complete. The parts removed during the edit are detached from their
+	 * machines, the parts added are sorted into machines, and each affected machine is checked once
+	 * during the next tick.
+	 * @param world The world which was edited
+	 * @param session The session returned by beginBulkEdit()
+	 */
+	public static void endBulkEdit(World world, MultiblockBulkEditSession session) {
+		if(registries.containsKey(world)) {
+			registries.get(world).endBulkEdit(session);
+		}
+	}
+
+	/**
+	 * Call when a controller starts holding the place of parts in an unloaded chunk.
+	 * @param world The world containing the multiblock
+	 * @param controller The controller holding ghost parts
+	 * @param chunkHash The hashed chunk coordinate of the unloaded chunk
+	 */
+	public static void addGhostChunk(World world, MultiblockControllerBase controller, long chunkHash) {
+		if(registries.containsKey(world)) {
+			registries.get(world).addGhostChunk(controller, chunkHash);
+		}
+	}
+
+	/**
+	 * Call when a controller no longer holds the place of any parts in a given chunk.
+	 * @param world The world containing the multiblock
+	 * @param controller The controller which was holding ghost parts
+	 * @param chunkHash The hashed chunk coordinate
+	 */
+	public static void removeGhostChunk(World world, MultiblockControllerBase controller, long chunkHash) {
+		if(registries.containsKey(world)) {
+			registries.get(world).removeGhostChunk(controller, chunkHash);
+		}
+	}
+
+	/**
+	 * Queues a controller's client updates to be sent at the end of the tick. Server only.
+	 * @param world The world containing the controller
+	 * @param controller The controller with updates to send
+	 */
+	public static void requestSync(World world, MultiblockControllerBase controller) {
+		if(registries.containsKey(world)) {
+			registries.get(world).requestSync(controller);
+		}
+	}
+
+	/**
+	 * Limit how many controllers in each world may send client updates per tick,
+	 * e.g. from your mod's configuration. Applies to current and future worlds.
+	 * @param maximum The most controllers to sync per tick, or 0 for no limit.
+	 */
+	public static void setMaximumSyncsPerTick(int maximum) {
+		maximumSyncsPerTick = Math.max(0, maximum);
+		for(MultiblockWorldRegistry registry : registries.values()) {
+			registry.setMaximumSyncsPerTick(maximumSyncsPerTick);
+		}
+	}
+
+	/**
+	 * Limit how many ticks validation of an unassembled machine may be put off while it keeps
+	 * changing, e.g. from your mod's configuration. Applies to current and future worlds.
+	 * @param ticks The most ticks to put off validation for, or 0 to validate on every change. Defaults to 20.
+	 */
+	public static void setMaximumValidationDelay(int ticks) {
+		maximumValidationDelay = Math.max(0, ticks);
+		for(MultiblockWorldRegistry registry : registries.values()) {
+			registry.setMaximumValidationDelay(maximumValidationDelay);
+		}
+	}
+
+	/**
+	 * Enable or disable server topology sync. When enabled, the server sends each machine's parts and
+	 * assembly state to clients, and clients bind parts to machines as told, skipping their own
+	 * connectivity checks, merges and validation.
+	 * This must be set identically on both sides, e.g. during your mod's initialization.
+	 * @param enabled True to enable server topology sync.
+	 */
+	public static void setServerTopologySync(boolean enabled) {
+		serverTopologySync = enabled;
+	}
+
+	public static boolean isServerTopologySyncEnabled() {
+		return serverTopologySync;
+	}
+
+	/**
+	 * Called on the client when a machine's save delegate receives a topology update from the server.
+	 * @param world The world containing the part
+	 * @param delegate The part which received the update
+	 * @param data The topology data
+	 */
+	public static void onTopologyReceived(World world, IMultiblockPart delegate, NBTTagCompound data) {
+		if(registries.containsKey(world)) {
+			registries.get(world).applyTopology(delegate, data);
+		}
+	}
+
+	/**
+	 * Sends a packet to every player watching the given chunk. Does nothing on the client.
+	 * @param world The world containing the chunk
+	 * @param packet The packet to send
+	 * @param chunkX X coordinate of the chunk
+	 * @param chunkZ Z coordinate of the chunk
+	 */
+	public static void sendToChunkWatchers(World world, Packet packet, int chunkX, int chunkZ) {
+		if(registries.containsKey(world)) {
+			registries.get(world).sendToChunkWatchers(packet, chunkX, chunkZ);
+		}
+	}
+
 	/**
 	 * @param world The world whose controllers you wish to retrieve.
 	 * @return An unmodifiable set of controllers active in the given world, or null if there are none.
@@ -115,6 +345,64 @@ public class MultiblockRegistry {
 		return null;
 	}
 	
+	/**
+	 * @param world The world whose part index you wish to retrieve.
+	 * @return The index of multiblock parts in the given world, or null if the world has none.
+	 */
+	public static MultiblockPartIndex getPartIndex(World world) {
+		if(registries.containsKey(world)) {
+			return registries.get(world).getPartIndex();
+		}
+		return null;
+	}
+	
+	/**
+	 * @param world The world to query.
+	 * @return The controller which owns the part at the given coordinate, or null if there is none.
+	 */
+	public static MultiblockControllerBase getControllerAt(World world, int x, int y, int z) {
+		if(registries.containsKey(world)) {
+			return registries.get(world).getControllerAt(x, y, z);
+		}
+		return null;
+	}
+	
+	/**
+	 * @param world The world to query.
+	 * @return The controllers whose bounding box contains the given coordinate, or null if the world has no controllers.
+	 */
+	public static Set<MultiblockControllerBase> getControllersContaining(World world, int x, int y, int z) {
+		if(registries.containsKey(world)) {
+			return registries.get(world).getControllerIndex().getControllersContaining(x, y, z);
+		}
+		return null;
+	}
+	
+	/**
+	 * @param world The world to query.
+	 * @param min The minimum coordinate of the area, inclusive.
+	 * @param max The maximum coordinate of the area, inclusive.
+	 * @return The controllers whose bounding box intersects the given area, or null if the world has no controllers.
+	 */
+	public static Set<MultiblockControllerBase> getControllersIntersecting(World world, CoordTriplet min, CoordTriplet max) {
+		if(registries.containsKey(world)) {
+			return registries.get(world).getControllerIndex().getControllersIntersecting(min.x, min.y, min.z, max.x, max.y, max.z);
+		}
+		return null;
+	}
+	
+	/**
+	 * @param world The world to query.
+	 * @param radius The distance from (x, y, z), in blocks.
+	 * @return The controllers whose bounding box comes within the given distance of a point, or null if the world has no controllers.
+	 */
+	public static Set<MultiblockControllerBase> getControllersWithinRadius(World world, double x, double y, double z, double radius) {
+		if(registries.containsKey(world)) {
+			return registries.get(world).getControllerIndex().getControllersWithinRadius(x, y, z, radius);
+		}
+		return null;
+	}
+	
 	/// *** PRIVATE HELPERS *** ///
 	
 	private static MultiblockWorldRegistry getOrCreateRegistry(World world) {
@@ -123,6 +411,8 @@ public class MultiblockRegistry {
 		}
 		else {
 			MultiblockWorldRegistry newRegistry = new MultiblockWorldRegistry(world);
+			newRegistry.setMaximumSyncsPerTick(maximumSyncsPerTick);
+			newRegistry.setMaximumValidationDelay(maximumValidationDelay);
 			registries.put(world, newRegistry);
 			return newRegistry;
 		}
@@ -0,0 +1,47 @@
+package erogenousbeef.core.multiblock;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Encodes controllers' save snapshots on a single shared daemon thread.
+ * 
+ * @author Erogenous Beef
+ */
+class MultiblockSaveEncoder {
+
+	private static ExecutorService executor = null;
+
+	/**
+	 * @return The snapshot's encoded data, once it's done.
+	 */
+	static Future<NBTTagCompound> encode(final IMultiblockSaveSnapshot snapshot) {
+		return getExecutor().submit(new Callable<NBTTagCompound>() {
+			@Override
+			public NBTTagCompound call() {
+				NBTTagCompound data = new NBTTagCompound();
+				snapshot.writeToNBT(data);
+				return data;
+			}
+		});
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if(executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "BeefCore Save Encoder");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+}
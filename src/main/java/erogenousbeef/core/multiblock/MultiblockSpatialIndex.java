@@ -0,0 +1,205 @@
+package erogenousbeef.core.multiblock;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.minecraft.world.ChunkCoordIntPair;
+import erogenousbeef.core.common.CoordTriplet;
+
+/**
+ * An index of the bounding boxes of a world's multiblock controllers, kept by the world registry.
+ * Controllers are bucketed by every chunk column their bounding box overlaps, so point, box and
+ * radius queries only look at the controllers near the area in question.
+ *
+ * Boxes are refreshed whenever the registry processes a dirty controller, so they may lag
+ * behind a controller's parts by up to one tick.
+ *
+ * @author Erogenous Beef
+ */
+public class MultiblockSpatialIndex {
+
+	private static class Entry {
+		int minX, minY, minZ, maxX, maxY, maxZ;
+
+		int getMinChunkX() { return minX >> 4; }
+		int getMinChunkZ() { return minZ >> 4; }
+		int getMaxChunkX() { return maxX >> 4; }
+		int getMaxChunkZ() { return maxZ >> 4; }
+
+		boolean intersects(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+			return this.minX <= maxX && this.maxX >= minX &&
+					this.minY <= maxY && this.maxY >= minY &&
+					this.minZ <= maxZ && this.maxZ >= minZ;
+		}
+	}
+
+	// Controllers, indexed by the hashed coordinate of each chunk their bounding box overlaps
+	private HashMap<Long, Set<MultiblockControllerBase>> buckets;
+	private HashMap<MultiblockControllerBase, Entry> entries;
+
+	public MultiblockSpatialIndex() {
+		buckets = new HashMap<Long, Set<MultiblockControllerBase>>();
+		entries = new HashMap<MultiblockControllerBase, Entry>();
+	}
+
+	/**
+	 * Record a controller's current bounding box, replacing any previous one.
+	 * @param controller The controller to record. Must not be empty.
+	 */
+	public void update(MultiblockControllerBase controller) {
+		CoordTriplet min = controller.getMinimumCoord();
+		CoordTriplet max = controller.getMaximumCoord();
+
+		Entry entry = entries.get(controller);
+		if(entry == null) {
+			entry = new Entry();
+			entries.put(controller, entry);
+		}
+		else if(entry.getMinChunkX() == min.x >> 4 && entry.getMinChunkZ() == min.z >> 4 &&
+				entry.getMaxChunkX() == max.x >> 4 && entry.getMaxChunkZ() == max.z >> 4) {
+			// Still in the same chunks, so the buckets are fine
+			setBounds(entry, min, max);
+			return;
+		}
+		else {
+			removeFromBuckets(controller, entry);
+		}
+
+		setBounds(entry, min, max);
+
+		Set<MultiblockControllerBase> bucket;
+		for(int chunkX = entry.getMinChunkX(); chunkX <= entry.getMaxChunkX(); chunkX++) {
+			for(int chunkZ = entry.getMinChunkZ(); chunkZ <= entry.getMaxChunkZ(); chunkZ++) {
+				long chunkHash = ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+				bucket = buckets.get(chunkHash);
+				if(bucket == null) {
+					bucket = new HashSet<MultiblockControllerBase>();
+					buckets.put(chunkHash, bucket);
+				}
+				bucket.add(controller);
+			}
+		}
+	}
+
+	/**
+	 * Forget a controller, e.g. because it has died.
+	 * @param controller The controller to forget.
+	 */
+	public void remove(MultiblockControllerBase controller) {
+		Entry entry = entries.remove(controller);
+		if(entry != null) {
+			removeFromBuckets(controller, entry);
+		}
+	}
+
+	/**
+	 * @return True if the controller's recorded bounding box intersects the given box, inclusive.
+	 * False if the controller has not been recorded.
+	 */
+	public boolean intersects(MultiblockControllerBase controller, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		Entry entry = entries.get(controller);
+		return entry != null && entry.intersects(minX, minY, minZ, maxX, maxY, maxZ);
+	}
+
+	/**
+	 * @return The controllers whose bounding box contains the given coordinate. Never null.
+	 */
+	public Set<MultiblockControllerBase> getControllersContaining(int x, int y, int z) {
+		return getControllersIntersecting(x, y, z, x, y, z);
+	}
+
+	/**
+	 * @return The controllers whose bounding box intersects the given box, inclusive. Never null.
+	 */
+	public Set<MultiblockControllerBase> getControllersIntersecting(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		Set<MultiblockControllerBase> found = new HashSet<MultiblockControllerBase>();
+
+		long chunksInQuery = (long)((maxX >> 4) - (minX >> 4) + 1) * (long)((maxZ >> 4) - (minZ >> 4) + 1);
+		if(chunksInQuery > buckets.size()) {
+			// Huge query area; cheaper to just test every controller
+			for(Map.Entry<MultiblockControllerBase, Entry> candidate : entries.entrySet()) {
+				if(candidate.getValue().intersects(minX, minY, minZ, maxX, maxY, maxZ)) {
+					found.add(candidate.getKey());
+				}
+			}
+			return found;
+		}
+
+		Set<MultiblockControllerBase> bucket;
+		for(int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+			for(int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+				bucket = buckets.get(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+				if(bucket == null) { continue; }
+
+				for(MultiblockControllerBase controller : bucket) {
+					if(!found.contains(controller) && entries.get(controller).intersects(minX, minY, minZ, maxX, maxY, maxZ)) {
+						found.add(controller);
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return The controllers whose bounding box comes within the given distance of a point,
+	 * treating each block as a full unit cube. Never null.
+	 */
+	public Set<MultiblockControllerBase> getControllersWithinRadius(double x, double y, double z, double radius) {
+		// A block's far face is one unit past its coordinate, so it may be in reach even when its coordinate isn't
+		Set<MultiblockControllerBase> candidates = getControllersIntersecting(
+				(int)Math.ceil(x - radius) - 1, (int)Math.ceil(y - radius) - 1, (int)Math.ceil(z - radius) - 1,
+				(int)Math.floor(x + radius), (int)Math.floor(y + radius), (int)Math.floor(z + radius));
+
+		Set<MultiblockControllerBase> found = new HashSet<MultiblockControllerBase>();
+		double radiusSq = radius * radius;
+		Entry entry;
+		double dx, dy, dz;
+		for(MultiblockControllerBase controller : candidates) {
+			entry = entries.get(controller);
+			dx = distanceToSpan(x, entry.minX, entry.maxX + 1);
+			dy = distanceToSpan(y, entry.minY, entry.maxY + 1);
+			dz = distanceToSpan(z, entry.minZ, entry.maxZ + 1);
+			if(dx*dx + dy*dy + dz*dz <= radiusSq) {
+				found.add(controller);
+			}
+		}
+		return found;
+	}
+
+	public void clear() {
+		buckets.clear();
+		entries.clear();
+	}
+
+	/* *** PRIVATE HELPERS *** */
+
+	private void removeFromBuckets(MultiblockControllerBase controller, Entry entry) {
+		Set<MultiblockControllerBase> bucket;
+		for(int chunkX = entry.getMinChunkX(); chunkX <= entry.getMaxChunkX(); chunkX++) {
+			for(int chunkZ = entry.getMinChunkZ(); chunkZ <= entry.getMaxChunkZ(); chunkZ++) {
+				long chunkHash = ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+				bucket = buckets.get(chunkHash);
+				if(bucket == null) { continue; }
+
+				bucket.remove(controller);
+				if(bucket.isEmpty()) {
+					buckets.remove(chunkHash);
+				}
+			}
+		}
+	}
+
+	private static void setBounds(Entry entry, CoordTriplet min, CoordTriplet max) {
+		entry.minX = min.x; entry.minY = min.y; entry.minZ = min.z;
+		entry.maxX = max.x; entry.maxY = max.y; entry.maxZ = max.z;
+	}
+
+	private static double distanceToSpan(double value, double min, double max) {
+		if(value < min) { return min - value; }
+		if(value > max) { return value - max; }
+		return 0;
+	}
+}
@@ -99,9 +99,11 @@ public abstract class MultiblockTileEntityBase extends IMultiblockPart {
 		super.writeToNBT(data);
 
 		if(isMultiblockSaveDelegate() && isConnected()) {
-			NBTTagCompound multiblockData = new NBTTagCompound();
-			this.controller.writeToNBT(multiblockData);
-			data.setTag("multiblockData", multiblockData);
+			data.setTag("multiblockData", this.controller.getMultiblockDataForSave());
+		}
+		else if(this.cachedMultiblockData != null) {
+			// Data which has not been assimilated into a machine yet must not be lost
+			data.setTag("multiblockData", this.cachedMultiblockData);
 		}
 	}
 		
@@ -156,6 +158,14 @@ public abstract class MultiblockTileEntityBase extends IMultiblockPart {
 	// Network Communication
 	@Override
 	public Packet getDescriptionPacket() {
+		if(isConnected() && getMultiblockController().shouldCacheDescriptionData()) {
+			// The machine's data is shared between every watcher, and its parts have nothing else to say
+			if(isMultiblockSaveDelegate()) {
+				return getMultiblockController().getDescriptionPacket(this);
+			}
+			return null;
+		}
+
 		NBTTagCompound packetData = new NBTTagCompound();
 		encodeDescriptionPacket(packetData);
 		return new S35PacketUpdateTileEntity(xCoord, yCoord, zCoord, 0, packetData);
@@ -163,6 +173,19 @@ public abstract class MultiblockTileEntityBase extends IMultiblockPart {
 	
 	@Override
 	public void onDataPacket(NetworkManager network, S35PacketUpdateTileEntity packet) {
+		if(packet.func_148853_f() == MultiblockControllerBase.SYNC_DELTA_ACTION) {
+			// Changed fields only; without a machine to apply them to, they're meaningless.
+			// The full set will arrive with the description packet.
+			if(isConnected()) {
+				getMultiblockController().readSyncFields(packet.func_148857_g());
+			}
+			return;
+		}
+		else if(packet.func_148853_f() == MultiblockControllerBase.TOPOLOGY_ACTION) {
+			MultiblockRegistry.onTopologyReceived(worldObj, this, packet.func_148857_g());
+			return;
+		}
+
 		decodeDescriptionPacket(packet.func_148857_g());
 	}
 	
@@ -176,9 +199,7 @@ public abstract class MultiblockTileEntityBase extends IMultiblockPart {
 	 */
 	protected void encodeDescriptionPacket(NBTTagCompound packetData) {
 		if(this.isMultiblockSaveDelegate() && isConnected()) {
-			NBTTagCompound tag = new NBTTagCompound();
-			getMultiblockController().formatDescriptionPacket(tag);
-			packetData.setTag("multiblockData", tag);
+			packetData.setTag("multiblockData", getMultiblockController().getDescriptionData());
 		}
 	}
 	
@@ -191,7 +212,15 @@ public abstract class MultiblockTileEntityBase extends IMultiblockPart {
 	protected void decodeDescriptionPacket(NBTTagCompound packetData) {
 		if(packetData.hasKey("multiblockData")) {
 			NBTTagCompound tag = packetData.getCompoundTag("multiblockData");
+			if(tag.hasKey("multiblockTopology")) {
+				// Binds this part to its machine first, so the rest can be applied directly
+				MultiblockRegistry.onTopologyReceived(worldObj, this, tag.getCompoundTag("multiblockTopology"));
+			}
+
 			if(isConnected()) {
+				if(tag.hasKey("multiblockSync")) {
+					getMultiblockController().readSyncFields(tag.getCompoundTag("multiblockSync"));
+				}
 				getMultiblockController().decodeDescriptionPacket(tag);
 			}
 			else {
@@ -215,6 +244,11 @@ public abstract class MultiblockTileEntityBase extends IMultiblockPart {
 	public void onMultiblockDataAssimilated() {
 		this.cachedMultiblockData = null;
 	}
+	
+	@Override
+	public void retainMultiblockSaveData(NBTTagCompound data) {
+		this.cachedMultiblockData = data;
+	}
 
 	///// Game logic callbacks (IMultiblockPart)
 	
@@ -296,6 +330,8 @@ public abstract class MultiblockTileEntityBase extends IMultiblockPart {
 	
 	@Override
 	public IMultiblockPart[] getNeighboringParts() {
+		MultiblockPartIndex partIndex = MultiblockRegistry.getPartIndex(worldObj);
+
 		CoordTriplet[] neighbors = new CoordTriplet[] {
 				new CoordTriplet(this.xCoord-1, this.yCoord, this.zCoord),
 				new CoordTriplet(this.xCoord, this.yCoord-1, this.zCoord),
@@ -306,9 +342,18 @@ public abstract class MultiblockTileEntityBase extends IMultiblockPart {
 		};
 
 		TileEntity te;
+		IMultiblockPart neighborPart;
 		List<IMultiblockPart> neighborParts = new ArrayList<IMultiblockPart>();
 		IChunkProvider chunkProvider = worldObj.getChunkProvider();
 		for(CoordTriplet neighbor : neighbors) {
+			// Indexed parts are found with an array read. Parts the registry hasn't indexed yet,
+			// e.g. orphans awaiting processing, must still be found in the world.
+			neighborPart = partIndex != null ? partIndex.getPart(neighbor.x, neighbor.y, neighbor.z) : null;
+			if(neighborPart != null) {
+				neighborParts.add(neighborPart);
+				continue;
+			}
+
 			if(!chunkProvider.chunkExists(neighbor.getChunkX(), neighbor.getChunkZ())) {
 				// Chunk not loaded, skip it.
 				continue;
@@ -344,11 +389,16 @@ public abstract class MultiblockTileEntityBase extends IMultiblockPart {
 	 */
 	protected void detachSelf(boolean chunkUnloading) {
 		if(this.controller != null) {
-			// Clean part out of controller
-			this.controller.detachBlock(this, chunkUnloading);
+			if(!chunkUnloading && MultiblockRegistry.deferPartRemoval(worldObj, this)) {
+				// Removed during a bulk edit; our controller lets go of us when the edit ends
+			}
+			else {
+				// Clean part out of controller
+				this.controller.detachBlock(this, chunkUnloading);
 
-			// The above should call onDetached, but, just in case...
-			this.controller = null;
+				// The above should call onDetached, but, just in case...
+				this.controller = null;
+			}
 		}
 
 		// Clean part out of lists in the registry
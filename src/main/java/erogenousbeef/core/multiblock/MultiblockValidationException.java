@@ -1,13 +1,30 @@
 package erogenousbeef.core.multiblock;
 
+import erogenousbeef.core.common.CoordTriplet;
+
 /**
  * An exception thrown when trying to validate a multiblock. Requires a string describing why the multiblock
- * could not assemble.
+ * could not assemble. Optionally, the position of the block which caused the failure.
  * @author Erogenous Beef
  */
 public class MultiblockValidationException extends Exception {
 
+	private CoordTriplet position;
+
 	public MultiblockValidationException(String reason) {
 		super(reason);
+		position = null;
+	}
+
+	public MultiblockValidationException(String reason, int x, int y, int z) {
+		super(reason);
+		position = new CoordTriplet(x, y, z);
+	}
+
+	/**
+	 * @return The position of the block which caused the failure, or null if it is not known.
+	 */
+	public CoordTriplet getPosition() {
+		return position == null ? null : position.copy();
 	}
 }
@@ -0,0 +1,377 @@
+package erogenousbeef.core.multiblock;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.minecraft.world.ChunkCoordIntPair;
+import erogenousbeef.core.common.BeefCoreLog;
+import erogenousbeef.core.common.CoordTriplet;
+
+/**
+ * A persistent index of a world's machines, kept on disk alongside its MultiblockDataStore, so that
+ * machines can be found before, or without, loading their chunks. Each machine is listed by its
+ * persistent id, with its controller class, reference coordinate, bounding box, part count and assembly state.
+ * Machines are only listed once they have first assembled, or have bulk data; the fragments of a machine
+ * under construction aren't.
+ *
+ * The world registry updates a machine's entry whenever its parts or assembly state change while it
+ * is fully loaded, and removes it when the machine is destroyed or merged into another. Machines
+ * which are unloaded, in whole or in part, keep the entry they had when last fully loaded.
+ *
+ * Entries are fixed-size records in a memory-mapped file, so updates are written in place. Queries
+ * scan every entry; they are meant for occasional use, not every tick.
+ * Enable with MultiblockRegistry.setWorldIndexEnabled(). Server only.
+ *
+ * @author Erogenous Beef
+ */
+public class MultiblockWorldIndex {
+
+	/**
+	 * A machine, as the index last saw it.
+	 */
+	public static class Entry {
+		private final long id;
+		private final String type;
+		private final CoordTriplet referenceCoord;
+		private final CoordTriplet minimumCoord;
+		private final CoordTriplet maximumCoord;
+		private final int partCount;
+		private final int assemblyState;
+
+		private Entry(long id, String type, CoordTriplet referenceCoord, CoordTriplet minimumCoord, CoordTriplet maximumCoord, int partCount, int assemblyState) {
+			this.id = id;
+			this.type = type;
+			this.referenceCoord = referenceCoord;
+			this.minimumCoord = minimumCoord;
+			this.maximumCoord = maximumCoord;
+			this.partCount = partCount;
+			this.assemblyState = assemblyState;
+		}
+
+		/**
+		 * @return The machine's persistent id; see MultiblockControllerBase.getPersistentId().
+		 */
+		public long getId() { return id; }
+
+		/**
+		 * @return The fully qualified class name of the machine's controller.
+		 */
+		public String getType() { return type; }
+
+		public CoordTriplet getReferenceCoord() { return referenceCoord.copy(); }
+		public CoordTriplet getMinimumCoord() { return minimumCoord.copy(); }
+		public CoordTriplet getMaximumCoord() { return maximumCoord.copy(); }
+		public int getPartCount() { return partCount; }
+
+		public boolean isAssembled() { return assemblyState == MultiblockControllerBase.AssemblyState.Assembled.ordinal(); }
+		public boolean isPaused() { return assemblyState == MultiblockControllerBase.AssemblyState.Paused.ordinal(); }
+
+		public boolean intersects(CoordTriplet min, CoordTriplet max) {
+			return minimumCoord.x <= max.x && maximumCoord.x >= min.x &&
+					minimumCoord.y <= max.y && maximumCoord.y >= min.y &&
+					minimumCoord.z <= max.z && maximumCoord.z >= min.z;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s #%d @ %s (%d parts)", type, id, referenceCoord, partCount);
+		}
+	}
+
+	// "BCIX"
+	private static final int MAGIC = 0x42434958;
+	private static final int VERSION = 1;
+
+	// Header: magic, version, entry count, reserved
+	private static final int HEADER_SIZE = 16;
+
+	// Record: id, type, reference x/y/z, minimum x/y/z, maximum x/y/z, part count, assembly state, padding
+	private static final int RECORD_SIZE = 64;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final File file;
+	private final File typesFile;
+	private MappedByteBuffer buffer;
+	private int count;
+
+	// Record slot by id
+	private HashMap<Long, Integer> slots;
+
+	// Controller class names, by the index stored in each record. Kept in their own file, one per line, as they're rarely added.
+	private List<String> types;
+	private HashMap<String, Integer> typeIds;
+
+	/**
+	 * Opens the index in the given directory, creating it if needed.
+	 * An index which can't be read is logged and started afresh.
+	 * @throws IOException if the index could not be opened or created
+	 */
+	public MultiblockWorldIndex(File directory) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create multiblock index directory " + directory);
+		}
+
+		file = new File(directory, "index.dat");
+		typesFile = new File(directory, "index-types.txt");
+		slots = new HashMap<Long, Integer>();
+		types = new ArrayList<String>();
+		typeIds = new HashMap<String, Integer>();
+
+		readTypes();
+		long existingSize = file.length();
+		buffer = map(Math.max(existingSize, HEADER_SIZE + (long)INITIAL_CAPACITY * RECORD_SIZE));
+
+		if(existingSize > 0 && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION) {
+			count = Math.max(0, Math.min(buffer.getInt(8), getCapacity()));
+			for(int slot = 0; slot < count; slot++) {
+				slots.put(buffer.getLong(getOffset(slot)), slot);
+			}
+		}
+		else {
+			if(existingSize > 0) {
+				BeefCoreLog.warning("Multiblock index %s is unreadable or from another version, and will be rebuilt as machines load", file);
+			}
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			count = 0;
+			buffer.putInt(8, count);
+		}
+	}
+
+	/**
+	 * @return The number of machines in the index.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return True if the index lists a machine with the given persistent id.
+	 */
+	public boolean contains(long id) {
+		return slots.containsKey(id);
+	}
+
+	/**
+	 * @return The entry for the machine with the given persistent id, or null if there is none.
+	 */
+	public Entry getEntry(long id) {
+		Integer slot = slots.get(id);
+		return slot == null ? null : readEntry(slot);
+	}
+
+	/**
+	 * @return Every machine in the index.
+	 */
+	public List<Entry> getEntries() {
+		List<Entry> entries = new ArrayList<Entry>(count);
+		for(int slot = 0; slot < count; slot++) {
+			entries.add(readEntry(slot));
+		}
+		return entries;
+	}
+
+	/**
+	 * @return The machines whose bounding boxes intersect the given box, inclusive.
+	 */
+	public List<Entry> getEntriesIntersecting(CoordTriplet min, CoordTriplet max) {
+		List<Entry> entries = new ArrayList<Entry>();
+		for(int slot = 0; slot < count; slot++) {
+			int offset = getOffset(slot);
+			if(buffer.getInt(offset + 24) <= max.x && buffer.getInt(offset + 36) >= min.x &&
+					buffer.getInt(offset + 28) <= max.y && buffer.getInt(offset + 40) >= min.y &&
+					buffer.getInt(offset + 32) <= max.z && buffer.getInt(offset + 44) >= min.z) {
+				entries.add(readEntry(slot));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * @return The machines whose controllers are exactly the given class.
+	 */
+	public List<Entry> getEntriesOfType(Class<? extends MultiblockControllerBase> type) {
+		List<Entry> entries = new ArrayList<Entry>();
+		Integer typeId = typeIds.get(type.getName());
+		if(typeId == null) { return entries; }
+
+		for(int slot = 0; slot < count; slot++) {
+			if(buffer.getInt(getOffset(slot) + 8) == typeId) {
+				entries.add(readEntry(slot));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * @return Every chunk overlapped by a machine's bounding box, e.g. for a mod which wants to
+	 * load its machines ahead of players with its own chunk loading tickets.
+	 */
+	public Set<ChunkCoordIntPair> getChunks() {
+		Set<ChunkCoordIntPair> chunks = new HashSet<ChunkCoordIntPair>();
+		for(int slot = 0; slot < count; slot++) {
+			int offset = getOffset(slot);
+			int maxChunkX = buffer.getInt(offset + 36) >> 4;
+			int maxChunkZ = buffer.getInt(offset + 44) >> 4;
+			for(int chunkX = buffer.getInt(offset + 24) >> 4; chunkX <= maxChunkX; chunkX++) {
+				for(int chunkZ = buffer.getInt(offset + 32) >> 4; chunkZ <= maxChunkZ; chunkZ++) {
+					chunks.add(new ChunkCoordIntPair(chunkX, chunkZ));
+				}
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * Adds or replaces a machine's entry.
+	 */
+	void put(long id, String type, CoordTriplet referenceCoord, CoordTriplet minimumCoord, CoordTriplet maximumCoord, int partCount, int assemblyState) throws IOException {
+		Integer slot = slots.get(id);
+		boolean added = slot == null;
+		if(added) {
+			if(count >= getCapacity()) {
+				buffer.force();
+				buffer = map(HEADER_SIZE + (long)getCapacity() * 2 * RECORD_SIZE);
+			}
+			slot = count;
+		}
+
+		int offset = getOffset(slot);
+		buffer.putLong(offset, id);
+		buffer.putInt(offset + 8, getTypeId(type));
+		putCoord(offset + 12, referenceCoord);
+		putCoord(offset + 24, minimumCoord);
+		putCoord(offset + 36, maximumCoord);
+		buffer.putInt(offset + 48, partCount);
+		buffer.put(offset + 52, (byte)assemblyState);
+
+		// Count the new entry only once it's written
+		if(added) {
+			slots.put(id, slot);
+			buffer.putInt(8, ++count);
+		}
+	}
+
+	/**
+	 * Removes a machine's entry, if it has one. The last entry is moved into its place.
+	 */
+	void remove(long id) {
+		Integer slot = slots.remove(id);
+		if(slot == null) { return; }
+
+		int last = --count;
+		if(slot != last) {
+			int from = getOffset(last);
+			int to = getOffset(slot);
+			for(int i = 0; i < RECORD_SIZE; i += 8) {
+				buffer.putLong(to + i, buffer.getLong(from + i));
+			}
+			slots.put(buffer.getLong(to), slot);
+		}
+		buffer.putInt(8, count);
+	}
+
+	/**
+	 * Forces the index out to disk. Called when the world saves.
+	 */
+	public void flush() {
+		buffer.force();
+	}
+
+	/* *** PRIVATE HELPERS *** */
+
+	private int getCapacity() {
+		return (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE;
+	}
+
+	private static int getOffset(int slot) {
+		return HEADER_SIZE + slot * RECORD_SIZE;
+	}
+
+	private void putCoord(int offset, CoordTriplet coord) {
+		buffer.putInt(offset, coord.x);
+		buffer.putInt(offset + 4, coord.y);
+		buffer.putInt(offset + 8, coord.z);
+	}
+
+	private CoordTriplet getCoord(int offset) {
+		return new CoordTriplet(buffer.getInt(offset), buffer.getInt(offset + 4), buffer.getInt(offset + 8));
+	}
+
+	private Entry readEntry(int slot) {
+		int offset = getOffset(slot);
+		int typeId = buffer.getInt(offset + 8);
+		String type = typeId >= 0 && typeId < types.size() ? types.get(typeId) : "";
+		return new Entry(buffer.getLong(offset), type, getCoord(offset + 12), getCoord(offset + 24), getCoord(offset + 36),
+				buffer.getInt(offset + 48), buffer.get(offset + 52));
+	}
+
+	private int getTypeId(String type) throws IOException {
+		Integer typeId = typeIds.get(type);
+		if(typeId != null) { return typeId; }
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(typesFile, true), "UTF-8");
+		try {
+			writer.write(type);
+			writer.write('\n');
+		}
+		finally {
+			writer.close();
+		}
+
+		typeId = types.size();
+		types.add(type);
+		typeIds.put(type, typeId);
+		return typeId;
+	}
+
+	private void readTypes() throws IOException {
+		if(!typesFile.exists()) { return; }
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(typesFile), "UTF-8"));
+		try {
+			String type;
+			while((type = reader.readLine()) != null) {
+				typeIds.put(type, types.size());
+				types.add(type);
+			}
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private MappedByteBuffer map(long size) throws IOException {
+		if(size > Integer.MAX_VALUE) {
+			throw new IOException(String.format("Multiblock index %s would be too large (%d bytes)", file, size));
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			// The mapping outlives the channel
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		finally {
+			try {
+				raf.close();
+			}
+			catch(IOException e) {
+				BeefCoreLog.warning("Could not close multiblock index %s: %s", file, e.getMessage());
+			}
+		}
+	}
+}
@@ -1,16 +1,29 @@
 package erogenousbeef.core.multiblock;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.Packet;
+import net.minecraft.server.management.PlayerManager;
+import net.minecraft.tileentity.TileEntity;
 import net.minecraft.world.ChunkCoordIntPair;
 import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraftforge.common.util.ForgeDirection;
 import erogenousbeef.core.common.BeefCoreLog;
 import erogenousbeef.core.common.CoordTriplet;
 
@@ -23,11 +36,22 @@ import erogenousbeef.core.common.CoordTriplet;
  */
 public class MultiblockWorldRegistry {
 
+	// See setMaximumValidationDelay()
+	public static final int DEFAULT_MAXIMUM_VALIDATION_DELAY = 20;
+
 	private World worldObj;
 	
 	private Set<MultiblockControllerBase> controllers;		// Active controllers
 	private Set<MultiblockControllerBase> dirtyControllers;	// Controllers whose parts lists have changed
 	private Set<MultiblockControllerBase> deadControllers;	// Controllers which are empty
+	private Set<MultiblockControllerBase> changedBlockControllers;	// Assembled controllers with changed non-part blocks in their bounds
+	private Set<MultiblockControllerBase> validatingControllers;	// Controllers part-way through a validation spread over several ticks
+	
+	// The last tick on which each controller was dirty, and the tick since which the validation of
+	// controllers which keep changing has been put off
+	private HashMap<MultiblockControllerBase, Long> lastDirtyTick;
+	private HashMap<MultiblockControllerBase, Long> deferredControllers;
+	private int maximumValidationDelay;
 
 	// A list of orphan parts - parts which currently have no master, but should seek one this tick
 	// Indexed by the hashed chunk coordinate
@@ -43,21 +67,72 @@ public class MultiblockWorldRegistry {
 	// This can be added-to asynchronously via chunk loads!
 	private HashMap<Long, Set<IMultiblockPart>> partsAwaitingChunkLoad;
 	
+	// Controllers which are holding the place of parts in unloaded chunks
+	// Indexed by the hashed chunk coordinate of the unloaded chunk
+	private HashMap<Long, Set<MultiblockControllerBase>> ghostControllers;
+
+	// Hashed coordinates of chunks holding ghosts which have loaded since the last tick.
+	// Any of their ghosts whose parts didn't come back with them are dropped once the chunks' orphans are processed.
+	private Set<Long> loadedGhostChunks;
+	
+	// Where the parts in this world are, for lookups that don't touch the world itself
+	private MultiblockPartIndex partIndex;
+	
+	// Where the controllers in this world are, by bounding box
+	private MultiblockSpatialIndex controllerIndex;
+	
+	// Regions in which parts are being placed or removed en masse
+	private List<MultiblockBulkEditSession> bulkEditSessions;
+
+	// Controllers with client updates waiting to be sent, and the most which may be sent per tick (0 for no limit)
+	private Set<MultiblockControllerBase> pendingSyncControllers;
+	private int maximumSyncsPerTick;
+
+	// Client, with server topology sync: machines by the server's id, and which machine the server says each packed coordinate belongs to
+	private HashMap<Long, MultiblockControllerBase> topologyControllers;
+	private HashMap<Long, MultiblockControllerBase> topologyBindings;
+
+	// Server: the sidecar store for bulk machine data, opened when first needed, and the world index, if enabled
+	private MultiblockDataStore dataStore;
+	private MultiblockWorldIndex worldIndex;
+	private boolean worldIndexFailed;
+	
 	// Mutexes to protect lists which may be changed due to asynchronous events, such as chunk loads
 	private Object partsAwaitingChunkLoadMutex;
 	private Object orphanedPartsMutex;
 	
 	public MultiblockWorldRegistry(World world) {
 		worldObj = world;
+		dataStore = null;
+		worldIndex = null;
+		worldIndexFailed = false;
+
+		// Size for the machines the world index says are coming, to spare rehashing as they load
+		MultiblockWorldIndex index = getWorldIndex();
+		int expectedControllers = Math.max(16, index == null ? 0 : index.size() * 4 / 3 + 1);
 		
-		controllers = new HashSet<MultiblockControllerBase>();
+		controllers = new HashSet<MultiblockControllerBase>(expectedControllers);
 		deadControllers = new HashSet<MultiblockControllerBase>();
 		dirtyControllers = new HashSet<MultiblockControllerBase>();
+		changedBlockControllers = new HashSet<MultiblockControllerBase>();
+		validatingControllers = new HashSet<MultiblockControllerBase>();
+		lastDirtyTick = new HashMap<MultiblockControllerBase, Long>(expectedControllers);
+		deferredControllers = new HashMap<MultiblockControllerBase, Long>();
 		
 		detachedParts = new HashSet<IMultiblockPart>();
 		orphanedParts = new HashSet<IMultiblockPart>();
 
 		partsAwaitingChunkLoad = new HashMap<Long, Set<IMultiblockPart>>();
+		ghostControllers = new HashMap<Long, Set<MultiblockControllerBase>>();
+		loadedGhostChunks = new HashSet<Long>();
+		partIndex = new MultiblockPartIndex();
+		controllerIndex = new MultiblockSpatialIndex();
+		bulkEditSessions = new ArrayList<MultiblockBulkEditSession>();
+		pendingSyncControllers = new HashSet<MultiblockControllerBase>();
+		maximumSyncsPerTick = 0;
+		maximumValidationDelay = DEFAULT_MAXIMUM_VALIDATION_DELAY;
+		topologyControllers = new HashMap<Long, MultiblockControllerBase>();
+		topologyBindings = new HashMap<Long, MultiblockControllerBase>();
 		partsAwaitingChunkLoadMutex = new Object();
 		orphanedPartsMutex = new Object();
 	}
@@ -66,7 +141,14 @@ public class MultiblockWorldRegistry {
 	 * Called before Tile Entities are ticked in the world. Run game logic.
 	 */
 	public void tickStart() {
+		if(bulkEditSessions.size() > 0) {
+			endExpiredBulkEdits();
+		}
+
 		if(controllers.size() > 0) {
+			long worldTick = worldObj.getTotalWorldTime();
+			MultiblockWorldIndex index = getWorldIndex();
+			MultiblockDataStore store = index == null ? null : getDataStore();
 			for(MultiblockControllerBase controller : controllers) {
 				if(controller.worldObj == worldObj && controller.worldObj.isRemote == worldObj.isRemote) {
 					if(controller.isEmpty()) {
@@ -77,10 +159,24 @@ public class MultiblockWorldRegistry {
 					else {
 						// Run the game logic for this world
 						controller.updateMultiblockEntity();
+
+						if(!worldObj.isRemote) {
+							controller.updateSaveSnapshot(worldTick);
+
+							if(store != null) {
+								controller.updateWorldIndex(index, store);
+							}
+
+							if(MultiblockRegistry.isServerTopologySyncEnabled() && controller.hasTopologyChanged()) {
+								pendingSyncControllers.add(controller);
+							}
+						}
 					}
 				}
 			}
 		}
+
+		flushSyncs();
 	}
 	
 	/**
@@ -108,6 +204,7 @@ public class MultiblockWorldRegistry {
 			
 			if(orphansToProcess != null && orphansToProcess.size() > 0) {
 				Set<MultiblockControllerBase> compatibleControllers;
+				MultiblockControllerBase ghostOwner;
 				
 				// Process orphaned blocks
 				// These are blocks that exist in a valid chunk and require a controller
@@ -125,17 +222,36 @@ public class MultiblockWorldRegistry {
 						continue;
 					}
 					
+					partIndex.add(orphan);
+
+					if(isBoundByServerTopology()) {
+						// The server says where this part belongs; if it hasn't yet, it will
+						MultiblockControllerBase topologyOwner = topologyBindings.get(CoordTriplet.pack(coord.x, coord.y, coord.z));
+						if(topologyOwner != null && controllers.contains(topologyOwner)) {
+							bindToTopologyOwner(orphan, topologyOwner);
+						}
+						continue;
+					}
+
 					// THIS IS THE ONLY PLACE WHERE PARTS ATTACH TO MACHINES
-					// Try to attach to a neighbor's master controller
-					compatibleControllers = orphan.attachToNeighbors();
-					if(compatibleControllers == null) {
-						// FOREVER ALONE! Create and register a new controller.
-						// THIS IS THE ONLY PLACE WHERE NEW CONTROLLERS ARE CREATED.
-						MultiblockControllerBase newController = orphan.createNewMultiblock();
-						newController.attachBlock(orphan);
-						this.controllers.add(newController);
+					ghostOwner = getGhostOwner(orphan, coord);
+					if(ghostOwner != null) {
+						// This part's chunk has returned, and its machine kept its place. Rebind it directly.
+						compatibleControllers = rebindToGhostOwner(orphan, ghostOwner);
+					}
+					else {
+						// Try to attach to a neighbor's master controller
+						compatibleControllers = orphan.attachToNeighbors();
+						if(compatibleControllers == null) {
+							// FOREVER ALONE! Create and register a new controller.
+							// THIS IS THE ONLY PLACE WHERE NEW CONTROLLERS ARE CREATED.
+							MultiblockControllerBase newController = orphan.createNewMultiblock();
+							newController.attachBlock(orphan);
+							this.controllers.add(newController);
+						}
 					}
-					else if(compatibleControllers.size() > 1) {
+
+					if(compatibleControllers != null && compatibleControllers.size() > 1) {
 						if(mergePools == null) { mergePools = new ArrayList<Set<MultiblockControllerBase>>(); }
 
 						// THIS IS THE ONLY PLACE WHERE MERGES ARE DETECTED
@@ -205,12 +321,87 @@ public class MultiblockWorldRegistry {
 			}
 		}
 
+		// Parts which were expected back with their chunks, but didn't return (e.g. the block was changed
+		// while unloaded), will never rebind; stop holding their places, so their machines can be checked again.
+		if(loadedGhostChunks.size() > 0) {
+			Set<Long> chunksToPurge;
+			synchronized(partsAwaitingChunkLoadMutex) {
+				chunksToPurge = loadedGhostChunks;
+				loadedGhostChunks = new HashSet<Long>();
+			}
+
+			for(Long chunkHash : chunksToPurge) {
+				Set<MultiblockControllerBase> chunkControllers = ghostControllers.get(chunkHash);
+				if(chunkControllers == null) { continue; }
+
+				for(MultiblockControllerBase controller : new ArrayList<MultiblockControllerBase>(chunkControllers)) {
+					if(controller.removeGhostsInChunk(chunkHash)) {
+						addDirtyController(controller);
+					}
+				}
+			}
+		}
+
+		// Continue validating machines which are being checked over several ticks.
+		// Dirty machines are skipped here; they'll be checked below.
+		if(validatingControllers.size() > 0) {
+			Iterator<MultiblockControllerBase> iter = validatingControllers.iterator();
+			MultiblockControllerBase controller;
+			while(iter.hasNext()) {
+				controller = iter.next();
+				if(dirtyControllers.contains(controller) || deferredControllers.containsKey(controller)) { continue; }
+
+				if(!controller.isEmpty() && controller.isValidationInProgress()) {
+					controller.checkIfMachineIsWhole();
+				}
+
+				if(!controller.isValidationInProgress()) {
+					iter.remove();
+				}
+			}
+		}
+
+		// Validate machines which were put off while they kept changing, now that they've stopped
+		long now = worldObj.getTotalWorldTime();
+		if(deferredControllers.size() > 0) {
+			Iterator<MultiblockControllerBase> iter = deferredControllers.keySet().iterator();
+			MultiblockControllerBase controller;
+			while(iter.hasNext()) {
+				controller = iter.next();
+				if(dirtyControllers.contains(controller)) { continue; }
+
+				iter.remove();
+				if(!controller.isEmpty()) {
+					validateController(controller);
+				}
+			}
+		}
+
 		// Process splits and assembly
 		// Any controllers which have had parts removed must be checked to see if some parts are no longer
 		// physically connected to their master.
 		if(dirtyControllers.size() > 0) {
 			Set<IMultiblockPart> newlyDetachedParts = null;
 			for(MultiblockControllerBase controller : dirtyControllers) {
+				if(isBoundByServerTopology()) {
+					// The server has already checked connectivity and validity; just keep the bounds current
+					if(controller.isEmpty()) {
+						addDeadController(controller);
+					}
+					else {
+						controller.recalculateMinMaxCoords();
+						controllerIndex.update(controller);
+					}
+					continue;
+				}
+
+				// A paused machine whose parts have all returned unchanged needs no further checks.
+				if(controller.restoreIfUnchanged()) {
+					controllerIndex.update(controller);
+					validatingControllers.remove(controller);
+					continue;
+				}
+
 				// Tell the machine to check if any parts are disconnected.
 				// It should return a set of parts which are no longer connected.
 				// POSTCONDITION: The controller must have informed those parts that
@@ -218,8 +409,30 @@ public class MultiblockWorldRegistry {
 				newlyDetachedParts = controller.checkForDisconnections();
 				
 				if(!controller.isEmpty()) {
-					controller.recalculateMinMaxCoords();
-					controller.checkIfMachineIsWhole();
+					// Connectivity is always kept up to date, but a machine which is still being built
+					// won't be validated until it's been left alone for a tick. Assembled machines are
+					// always validated at once, so that losing a part breaks them straight away.
+					Long lastDirty = lastDirtyTick.put(controller, now);
+					if(maximumValidationDelay > 0 && !controller.isAssembled() && lastDirty != null && lastDirty >= now - 1) {
+						Long deferredSince = deferredControllers.get(controller);
+						if(deferredSince != null && now - deferredSince >= maximumValidationDelay) {
+							deferredControllers.remove(controller);
+							validateController(controller);
+						}
+						else {
+							if(deferredSince == null) {
+								deferredControllers.put(controller, now);
+							}
+
+							// Only validation waits; bounds and the spatial index stay current
+							controller.recalculateMinMaxCoords();
+							controllerIndex.update(controller);
+						}
+					}
+					else {
+						deferredControllers.remove(controller);
+						validateController(controller);
+					}
 				}
 				else {
 					addDeadController(controller);
@@ -234,6 +447,16 @@ public class MultiblockWorldRegistry {
 			dirtyControllers.clear();
 		}
 		
+		// Re-check just the changed blocks inside assembled machines.
+		// Machines which were dirty have already had a full check, which discards these.
+		if(changedBlockControllers.size() > 0) {
+			for(MultiblockControllerBase controller : changedBlockControllers) {
+				controller.checkChangedBlocks();
+			}
+			
+			changedBlockControllers.clear();
+		}
+		
 		// Unregister dead controllers
 		if(deadControllers.size() > 0) {
 			for(MultiblockControllerBase controller : deadControllers) {
@@ -243,9 +466,24 @@ public class MultiblockWorldRegistry {
 					BeefCoreLog.fatal("Found a non-empty controller. Forcing it to shed its blocks and die. This should never happen!");
 					detachedParts.addAll(controller.detachAllBlocks());
 				}
+				
+				// Parts in unloaded chunks will find a new home when they load
+				controller.clearGhosts();
 
 				// THIS IS THE ONLY PLACE WHERE CONTROLLERS ARE UNREGISTERED.
 				this.controllers.remove(controller);
+				controllerIndex.remove(controller);
+				changedBlockControllers.remove(controller);
+				validatingControllers.remove(controller);
+				lastDirtyTick.remove(controller);
+				deferredControllers.remove(controller);
+				pendingSyncControllers.remove(controller);
+				if(isBoundByServerTopology()) {
+					forgetTopology(controller);
+				}
+				if(worldIndex != null) {
+					controller.removeFromWorldIndex(worldIndex);
+				}
 			}
 			
 			deadControllers.clear();
@@ -263,6 +501,23 @@ public class MultiblockWorldRegistry {
 		detachedParts.clear();
 	}
 
+	/**
+	 * Recalculates a controller's bounding box and checks whether it is whole.
+	 * @param controller A non-empty controller.
+	 */
+	private void validateController(MultiblockControllerBase controller) {
+		controller.recalculateMinMaxCoords();
+		controller.checkIfMachineIsWhole();
+		controllerIndex.update(controller);
+		
+		if(controller.isValidationInProgress()) {
+			validatingControllers.add(controller);
+		}
+		else {
+			validatingControllers.remove(controller);
+		}
+	}
+
 	/**
 	 * Called when a multiblock part is added to the world, either via chunk-load or user action.
 	 * If its chunk is loaded, it will be processed during the next tick.
@@ -289,8 +544,15 @@ public class MultiblockWorldRegistry {
 			}
 		}
 		else {
-			// Part goes into the orphan queue, to be checked this tick
-			addOrphanedPartThreadsafe(part);
+			MultiblockBulkEditSession session = getBulkEditSession(worldLocation.x, worldLocation.y, worldLocation.z);
+			if(session != null) {
+				// Part will be sorted into a machine when the session ends
+				session.addedParts.add(part);
+			}
+			else {
+				// Part goes into the orphan queue, to be checked this tick
+				addOrphanedPartThreadsafe(part);
+			}
 		}
 	}
 	
@@ -316,6 +578,13 @@ public class MultiblockWorldRegistry {
 			}
 		}
 
+		boolean removalQueued = false;
+		for(MultiblockBulkEditSession session : bulkEditSessions) {
+			session.addedParts.remove(part);
+			removalQueued |= session.removedParts.contains(part);
+		}
+
+		partIndex.remove(part);
 		detachedParts.remove(part);
 		if(orphanedParts.contains(part)) {
 			synchronized(orphanedPartsMutex) {
@@ -323,7 +592,26 @@ public class MultiblockWorldRegistry {
 			}
 		}
 		
-		part.assertDetached();
+		// A part removed during a bulk edit stays attached to its machine until the edit ends
+		if(!removalQueued) {
+			part.assertDetached();
+		}
+	}
+
+	/**
+	 * Called when an attached part is about to be removed from the world, before it detaches from its machine.
+	 * If the part is within an open bulk edit, it stays attached to its machine, and is detached when the edit ends.
+	 * @param part The part being removed.
+	 * @return True if detaching the part has been put off, false if it must detach now.
+	 */
+	public boolean deferPartRemoval(IMultiblockPart part) {
+		if(bulkEditSessions.isEmpty()) { return false; }
+
+		MultiblockBulkEditSession session = getBulkEditSession(part.xCoord, part.yCoord, part.zCoord);
+		if(session == null) { return false; }
+
+		session.removedParts.add(part);
+		return true;
 	}
 
 	/**
@@ -331,21 +619,100 @@ public class MultiblockWorldRegistry {
 	 * Does some housekeeping just to be nice.
 	 */
 	public void onWorldUnloaded() {
+		clearAll();
+		if(dataStore != null) {
+			dataStore.close();
+			dataStore = null;
+		}
+		if(worldIndex != null) {
+			worldIndex.flush();
+			worldIndex = null;
+		}
+		worldObj = null;
+	}
+
+	/**
+	 * Called when the world has saved. Forces bulk machine data out to disk along with it.
+	 */
+	public void onWorldSaved() {
+		if(dataStore != null) {
+			dataStore.flush();
+		}
+		if(worldIndex != null) {
+			worldIndex.flush();
+		}
+	}
+
+	/**
+	 * @return The sidecar store for this world's bulk machine data, or null on the client
+	 * or if the world has nowhere to save.
+	 */
+	public MultiblockDataStore getDataStore() {
+		if(dataStore == null) {
+			File directory = getSaveDirectory();
+			if(directory != null) {
+				dataStore = new MultiblockDataStore(directory);
+			}
+		}
+		return dataStore;
+	}
+
+	/**
+	 * @return The index of this world's machines, or null if the world index is disabled,
+	 * on the client, or if it could not be opened.
+	 */
+	public MultiblockWorldIndex getWorldIndex() {
+		if(worldIndex == null && !worldIndexFailed && MultiblockRegistry.isWorldIndexEnabled()) {
+			File directory = getSaveDirectory();
+			if(directory != null) {
+				try {
+					worldIndex = new MultiblockWorldIndex(directory);
+				}
+				catch(IOException e) {
+					BeefCoreLog.error("Could not open the multiblock index in %s; it is disabled for this world: %s", directory, e.getMessage());
+					worldIndexFailed = true;
+				}
+			}
+		}
+		return worldIndex;
+	}
+
+	/**
+	 * @return The directory for this world's multiblock data, or null on the client or if the world has nowhere to save.
+	 */
+	private File getSaveDirectory() {
+		if(!(worldObj instanceof WorldServer)) { return null; }
+		File saveLocation = ((WorldServer)worldObj).getChunkSaveLocation();
+		return saveLocation == null ? null : new File(saveLocation, "beefcore");
+	}
+	
+	private void clearAll() {
 		controllers.clear();
 		deadControllers.clear();
 		dirtyControllers.clear();
+		changedBlockControllers.clear();
+		validatingControllers.clear();
+		lastDirtyTick.clear();
+		deferredControllers.clear();
+		bulkEditSessions.clear();
+		pendingSyncControllers.clear();
+		topologyControllers.clear();
+		topologyBindings.clear();
 		
 		detachedParts.clear();
+		ghostControllers.clear();
+		partIndex.clear();
+		controllerIndex.clear();
 		
 		synchronized(partsAwaitingChunkLoadMutex) {
 			partsAwaitingChunkLoad.clear();
+			loadedGhostChunks.clear();
 		}
 		
 		synchronized(orphanedPartsMutex) {
 			orphanedParts.clear();
 		}
 		
-		worldObj = null;
 	}
 
 	/**
@@ -366,6 +733,74 @@ public class MultiblockWorldRegistry {
 				}
 			}
 		}
+
+		if(ghostControllers.containsKey(chunkHash)) {
+			synchronized(partsAwaitingChunkLoadMutex) {
+				loadedGhostChunks.add(chunkHash);
+			}
+		}
+	}
+
+	/**
+	 * Called when a chunk is about to unload, before it is saved and before its parts
+	 * receive onChunkUnload(). Detaches all of the chunk's parts in one batch per controller,
+	 * so each affected machine is paused once and no connectivity check is scheduled.
+	 * The parts will rejoin their machines via the orphan list when the chunk reloads.
+	 * 
+	 * @param chunk The chunk which is unloading
+	 */
+	public void onChunkUnloaded(Chunk chunk) {
+		// Machines bound by server topology don't pause, so their parts can simply leave one by one
+		if(isBoundByServerTopology()) { return; }
+
+		HashMap<MultiblockControllerBase, List<IMultiblockPart>> partsByController = null;
+		IMultiblockPart part;
+		MultiblockControllerBase controller;
+		List<IMultiblockPart> controllerParts;
+
+		// Gather first; controller callbacks must not run while we walk the chunk's tile entity map
+		for(Object te : chunk.chunkTileEntityMap.values()) {
+			if(!(te instanceof IMultiblockPart)) { continue; }
+
+			part = (IMultiblockPart)te;
+			controller = part.getMultiblockController();
+			if(controller == null || part.isInvalid()) { continue; }
+			
+			if(partsByController == null) { partsByController = new HashMap<MultiblockControllerBase, List<IMultiblockPart>>(); }
+
+			controllerParts = partsByController.get(controller);
+			if(controllerParts == null) {
+				controllerParts = new ArrayList<IMultiblockPart>();
+				partsByController.put(controller, controllerParts);
+			}
+			controllerParts.add(part);
+		}
+		
+		if(partsByController == null) { return; }
+
+		for(MultiblockControllerBase unloadingController : partsByController.keySet()) {
+			unloadingController.detachBlocksForChunkUnload(partsByController.get(unloadingController));
+		}
+	}
+
+	/**
+	 * Called when a block in this world has changed. If it lies inside the bounding box of an
+	 * assembled machine and is not itself a multiblock part, only that machine is told, and only
+	 * that coordinate will be re-checked during the next tick.
+	 * Parts are ignored here; they already mark their machines dirty when they come and go.
+	 * 
+	 * @param x X coordinate of the changed block
+	 * @param y Y coordinate of the changed block
+	 * @param z Z coordinate of the changed block
+	 */
+	public void onBlockChanged(int x, int y, int z) {
+		if(partIndex.hasPart(x, y, z)) { return; }
+
+		for(MultiblockControllerBase controller : controllerIndex.getControllersContaining(x, y, z)) {
+			if(controller.onBlockChangedInBounds(x, y, z)) {
+				changedBlockControllers.add(controller);
+			}
+		}
 	}
 
 	/**
@@ -386,9 +821,491 @@ public class MultiblockWorldRegistry {
 	 * @param dirtyController The dirty controller.
 	 */
 	public void addDirtyController(MultiblockControllerBase dirtyController) {
+		if(bulkEditSessions.size() > 0) {
+			CoordTriplet min, max;
+			for(MultiblockBulkEditSession session : bulkEditSessions) {
+				min = session.getMinimumCoord();
+				max = session.getMaximumCoord();
+				if(controllerIndex.intersects(dirtyController, min.x, min.y, min.z, max.x, max.y, max.z)) {
+					// Checked once, when the session ends
+					session.dirtyControllers.add(dirtyController);
+					return;
+				}
+			}
+		}
+
 		this.dirtyControllers.add(dirtyController);
 	}
 	
+	/**
+	 * Start recording, rather than processing, part and machine changes within a region.
+	 * @param min Minimum coordinate of the region, inclusive
+	 * @param max Maximum coordinate of the region, inclusive
+	 * @return The new session, to be passed to endBulkEdit() once the edit is complete.
+	 */
+	public MultiblockBulkEditSession beginBulkEdit(CoordTriplet min, CoordTriplet max) {
+		MultiblockBulkEditSession session = new MultiblockBulkEditSession(min, max, worldObj.getTotalWorldTime());
+		bulkEditSessions.add(session);
+		return session;
+	}
+	
+	/**
+	 * Ends a bulk edit. Parts removed during it are detached from their machines, then the parts
+	 * added during it are sorted into machines in one pass.
+	 * Groups of connected new parts which touch no existing machine get a new machine each, directly.
+	 * Groups which do touch existing machines are queued as orphans, to join those machines as usual.
+	 * Either way, each affected machine is checked once, on the next tick.
+	 * @param session The session returned by beginBulkEdit().
+	 */
+	public void endBulkEdit(MultiblockBulkEditSession session) {
+		if(!bulkEditSessions.remove(session)) {
+			BeefCoreLog.warning("Ending a bulk edit session which is not open in this world. Ignoring it.");
+			return;
+		}
+
+		// Removed parts leave their machines first, so each machine is checked without them
+		MultiblockControllerBase removedFrom;
+		for(IMultiblockPart part : session.removedParts) {
+			removedFrom = part.getMultiblockController();
+			if(removedFrom != null) {
+				removedFrom.detachBlock(part, false);
+			}
+			part.assertDetached();
+		}
+
+		for(MultiblockControllerBase controller : session.dirtyControllers) {
+			if(controllers.contains(controller)) {
+				addDirtyController(controller);
+			}
+		}
+
+		// Only parts which are still in the world, where they're supposed to be, are of interest
+		IChunkProvider chunkProvider = worldObj.getChunkProvider();
+		HashMap<Long, IMultiblockPart> partsByCoord = new HashMap<Long, IMultiblockPart>();
+		for(IMultiblockPart part : session.addedParts) {
+			if(part.isInvalid() || !chunkProvider.chunkExists(part.xCoord >> 4, part.zCoord >> 4)) { continue; }
+			if(worldObj.getTileEntity(part.xCoord, part.yCoord, part.zCoord) != part) { continue; }
+
+			partsByCoord.put(CoordTriplet.pack(part.xCoord, part.yCoord, part.zCoord), part);
+		}
+
+		// Sort the new parts into connected groups
+		List<IMultiblockPart> component = new ArrayList<IMultiblockPart>();
+		LinkedList<IMultiblockPart> partsToCheck = new LinkedList<IMultiblockPart>();
+		Set<IMultiblockPart> visited = new HashSet<IMultiblockPart>();
+		IMultiblockPart part, neighbor;
+		boolean touchesExistingMachine;
+
+		for(IMultiblockPart start : partsByCoord.values()) {
+			if(visited.contains(start)) { continue; }
+
+			component.clear();
+			touchesExistingMachine = false;
+			visited.add(start);
+			partsToCheck.add(start);
+
+			while(!partsToCheck.isEmpty()) {
+				part = partsToCheck.removeFirst();
+				component.add(part);
+
+				if(getGhostOwner(part, part.getWorldLocation()) != null) {
+					touchesExistingMachine = true;
+				}
+
+				for(ForgeDirection dir : ForgeDirection.VALID_DIRECTIONS) {
+					int x = part.xCoord + dir.offsetX, y = part.yCoord + dir.offsetY, z = part.zCoord + dir.offsetZ;
+					neighbor = partsByCoord.get(CoordTriplet.pack(x, y, z));
+					if(neighbor != null) {
+						if(!visited.contains(neighbor) && neighbor.getMultiblockControllerType().equals(part.getMultiblockControllerType())) {
+							visited.add(neighbor);
+							partsToCheck.add(neighbor);
+						}
+						continue;
+					}
+
+					neighbor = partIndex.getPart(x, y, z);
+					if(neighbor != null && neighbor.isConnected() &&
+							neighbor.getMultiblockController().getClass().equals(part.getMultiblockControllerType())) {
+						touchesExistingMachine = true;
+					}
+				}
+			}
+
+			if(touchesExistingMachine) {
+				// Let the usual orphan processing handle merging into the existing machines
+				addAllOrphanedPartsThreadsafe(component);
+				continue;
+			}
+
+			// Attach in ascending order, so that the first part is the reference and the save delegate never moves
+			Collections.sort(component, new Comparator<IMultiblockPart>() {
+				@Override
+				public int compare(IMultiblockPart a, IMultiblockPart b) {
+					return a.getWorldLocation().compareTo(b.getWorldLocation());
+				}
+			});
+
+			MultiblockControllerBase newController = component.get(0).createNewMultiblock();
+			for(IMultiblockPart componentPart : component) {
+				partIndex.add(componentPart);
+				newController.attachBlock(componentPart);
+			}
+			this.controllers.add(newController);
+		}
+	}
+	
+	/**
+	 * Sends a packet to every player watching the given chunk. Does nothing on the client.
+	 * @param packet The packet to send
+	 * @param chunkX X coordinate of the chunk
+	 * @param chunkZ Z coordinate of the chunk
+	 */
+	public void sendToChunkWatchers(Packet packet, int chunkX, int chunkZ) {
+		if(!(worldObj instanceof WorldServer)) { return; }
+
+		PlayerManager playerManager = ((WorldServer)worldObj).getPlayerManager();
+		EntityPlayerMP player;
+		for(Object o : worldObj.playerEntities) {
+			player = (EntityPlayerMP)o;
+			if(playerManager.isPlayerWatchingChunk(player, chunkX, chunkZ)) {
+				player.playerNetServerHandler.sendPacket(packet);
+			}
+		}
+	}
+	
+	/**
+	 * Queues a controller's client updates to be sent at the end of the tick, once its sync interval
+	 * has elapsed. Repeated requests are coalesced. Server only.
+	 * @param controller The controller with updates to send
+	 */
+	public void requestSync(MultiblockControllerBase controller) {
+		if(worldObj.isRemote) { return; }
+		pendingSyncControllers.add(controller);
+	}
+	
+	/**
+	 * Limit how many controllers may send client updates in a single tick. Controllers with higher
+	 * sync priorities go first, then those which have waited longest; the rest wait for the next tick.
+	 * @param maximum The most controllers to sync per tick, or 0 for no limit.
+	 */
+	public void setMaximumSyncsPerTick(int maximum) {
+		maximumSyncsPerTick = Math.max(0, maximum);
+	}
+	
+	public int getMaximumSyncsPerTick() {
+		return maximumSyncsPerTick;
+	}
+	
+	/**
+	 * Limit how long validation of an unassembled machine may be put off while it changes on
+	 * consecutive ticks, e.g. while a player or a machine is placing its blocks.
+	 * @param ticks The most ticks to put off validation for, or 0 to validate on every change.
+	 */
+	public void setMaximumValidationDelay(int ticks) {
+		maximumValidationDelay = Math.max(0, ticks);
+	}
+	
+	public int getMaximumValidationDelay() {
+		return maximumValidationDelay;
+	}
+	
+	/**
+	 * Sends the queued client updates of every controller whose sync interval has elapsed.
+	 * Controllers nobody is watching are flushed without sending anything.
+	 */
+	private void flushSyncs() {
+		if(pendingSyncControllers.isEmpty()) { return; }
+
+		long worldTick = worldObj.getTotalWorldTime();
+		List<MultiblockControllerBase> dueControllers = new ArrayList<MultiblockControllerBase>();
+		MultiblockControllerBase controller;
+		Iterator<MultiblockControllerBase> it = pendingSyncControllers.iterator();
+		while(it.hasNext()) {
+			controller = it.next();
+			if(controller.isEmpty() || !controllers.contains(controller)) {
+				it.remove();
+			}
+			else if(controller.isSyncDue(worldTick)) {
+				dueControllers.add(controller);
+			}
+		}
+
+		if(maximumSyncsPerTick > 0 && dueControllers.size() > maximumSyncsPerTick) {
+			Collections.sort(dueControllers, new Comparator<MultiblockControllerBase>() {
+				@Override
+				public int compare(MultiblockControllerBase a, MultiblockControllerBase b) {
+					int priorityA = a.getSyncPriority(), priorityB = b.getSyncPriority();
+					if(priorityA != priorityB) { return priorityA > priorityB ? -1 : 1; }
+
+					long lastA = a.getLastSyncTick(), lastB = b.getLastSyncTick();
+					return lastA < lastB ? -1 : (lastA == lastB ? 0 : 1);
+				}
+			});
+			dueControllers = dueControllers.subList(0, maximumSyncsPerTick);
+		}
+
+		CoordTriplet rc;
+		for(MultiblockControllerBase dueController : dueControllers) {
+			pendingSyncControllers.remove(dueController);
+			rc = dueController.getReferenceCoord();
+			dueController.flushSync(worldTick, rc != null && hasChunkWatchers(rc.getChunkX(), rc.getChunkZ()));
+		}
+	}
+	
+	/**
+	 * @return True if any player is watching the given chunk. Always false on the client.
+	 */
+	private boolean hasChunkWatchers(int chunkX, int chunkZ) {
+		if(!(worldObj instanceof WorldServer)) { return false; }
+
+		PlayerManager playerManager = ((WorldServer)worldObj).getPlayerManager();
+		for(Object o : worldObj.playerEntities) {
+			if(playerManager.isPlayerWatchingChunk((EntityPlayerMP)o, chunkX, chunkZ)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Applies a topology update from the server: binds the listed parts to the machine it identifies,
+	 * creating that machine if this client doesn't know it yet, unbinds parts it no longer has, and
+	 * adopts its assembly state. Parts which aren't loaded here are bound when they arrive.
+	 * Client only, with server topology sync enabled.
+	 * @param delegate The part which received the update, i.e. the server machine's save delegate
+	 * @param data The topology data
+	 */
+	public void applyTopology(IMultiblockPart delegate, NBTTagCompound data) {
+		if(!isBoundByServerTopology()) { return; }
+
+		long[] added;
+		long[] removed = null;
+		try {
+			added = MultiblockControllerBase.unpackCoordinates(data.getByteArray("added"));
+			if(!data.getBoolean("full")) {
+				removed = MultiblockControllerBase.unpackCoordinates(data.getByteArray("removed"));
+			}
+		}
+		catch(IllegalArgumentException e) {
+			BeefCoreLog.warning("Ignoring malformed multiblock topology data at %d, %d, %d: %s", delegate.xCoord, delegate.yCoord, delegate.zCoord, e.getMessage());
+			return;
+		}
+
+		long id = data.getLong("id");
+		MultiblockControllerBase controller = topologyControllers.get(id);
+		if(controller == null && data.hasKey("previousId")) {
+			// The server machine's save delegate has moved; carry our machine over to its new id
+			controller = topologyControllers.get(data.getLong("previousId"));
+			if(controller != null && controller.getTopologyId() == data.getLong("previousId")) {
+				topologyControllers.remove(controller.getTopologyId());
+				topologyControllers.put(id, controller);
+				controller.setTopologyId(id);
+			}
+		}
+
+		if(controller == null || !controllers.contains(controller)) {
+			controller = delegate.createNewMultiblock();
+			controller.setTopologyId(id);
+			controllers.add(controller);
+			topologyControllers.put(id, controller);
+		}
+
+		Set<Long> serverTopology = controller.getServerTopology();
+		if(data.getBoolean("full")) {
+			Set<Long> fullTopology = new HashSet<Long>(added.length * 2);
+			for(long coord : added) { fullTopology.add(coord); }
+
+			List<Long> missing = new ArrayList<Long>();
+			for(Long coord : serverTopology) {
+				if(!fullTopology.contains(coord)) { missing.add(coord); }
+			}
+			removed = new long[missing.size()];
+			for(int i = 0; i < removed.length; i++) { removed[i] = missing.get(i); }
+		}
+
+		IMultiblockPart part;
+		for(long coord : removed) {
+			if(!serverTopology.remove(coord)) { continue; }
+			if(topologyBindings.get(coord) == controller) {
+				topologyBindings.remove(coord);
+			}
+
+			part = getTopologyPart(delegate, coord);
+			if(part != null && part.getMultiblockController() == controller) {
+				controller.detachBlock(part, false);
+				detachedParts.add(part);
+			}
+		}
+
+		MultiblockControllerBase previousOwner;
+		for(long coord : added) {
+			serverTopology.add(coord);
+			previousOwner = topologyBindings.put(coord, controller);
+			if(previousOwner != null && previousOwner != controller) {
+				previousOwner.getServerTopology().remove(coord);
+			}
+
+			part = getTopologyPart(delegate, coord);
+			if(part != null) {
+				bindToTopologyOwner(part, controller);
+			}
+		}
+
+		controller.setAssemblyStateFromServer(data.getByte("state"));
+	}
+	
+	/**
+	 * @return The loaded, valid part at the given packed coordinate, or null if there is none.
+	 */
+	private IMultiblockPart getTopologyPart(IMultiblockPart delegate, long coord) {
+		int x = CoordTriplet.unpackX(coord), y = CoordTriplet.unpackY(coord), z = CoordTriplet.unpackZ(coord);
+		if(delegate.xCoord == x && delegate.yCoord == y && delegate.zCoord == z) {
+			return delegate.isInvalid() ? null : delegate;
+		}
+
+		IMultiblockPart part = partIndex.getPart(x, y, z);
+		if(part == null) {
+			// Not processed as an orphan yet, e.g. its chunk arrived alongside this update
+			TileEntity te = worldObj.getTileEntity(x, y, z);
+			if(te instanceof IMultiblockPart) {
+				part = (IMultiblockPart)te;
+			}
+		}
+		return part == null || part.isInvalid() ? null : part;
+	}
+	
+	/**
+	 * Attaches a part to the machine the server says it belongs to, detaching it from any other first.
+	 */
+	private void bindToTopologyOwner(IMultiblockPart part, MultiblockControllerBase owner) {
+		MultiblockControllerBase currentController = part.getMultiblockController();
+		if(currentController == owner) { return; }
+
+		if(currentController != null) {
+			currentController.detachBlock(part, false);
+		}
+
+		partIndex.add(part);
+		detachedParts.remove(part);
+		owner.attachBlock(part);
+		if(owner.isAssembled()) {
+			part.onMachineAssembled(owner);
+		}
+	}
+	
+	/**
+	 * Drops a dead client machine's topology bindings. If its server machine is still around,
+	 * the next description packet from its save delegate will recreate it.
+	 */
+	private void forgetTopology(MultiblockControllerBase controller) {
+		if(topologyControllers.get(controller.getTopologyId()) == controller) {
+			topologyControllers.remove(controller.getTopologyId());
+		}
+
+		for(Long coord : controller.getServerTopology()) {
+			if(topologyBindings.get(coord) == controller) {
+				topologyBindings.remove(coord);
+			}
+		}
+		controller.getServerTopology().clear();
+	}
+	
+	/**
+	 * @return True if this is a client world whose parts are bound by server topology packets.
+	 */
+	private boolean isBoundByServerTopology() {
+		return worldObj.isRemote && MultiblockRegistry.isServerTopologySyncEnabled();
+	}
+	
+	/**
+	 * Ends any bulk edit sessions which have been open for too long, e.g. because the code which began
+	 * them threw before it could end them.
+	 */
+	private void endExpiredBulkEdits() {
+		long now = worldObj.getTotalWorldTime();
+		List<MultiblockBulkEditSession> expired = null;
+		for(MultiblockBulkEditSession session : bulkEditSessions) {
+			if(now - session.getStartTick() > MultiblockBulkEditSession.MAXIMUM_DURATION) {
+				if(expired == null) { expired = new ArrayList<MultiblockBulkEditSession>(); }
+				expired.add(session);
+			}
+		}
+
+		if(expired == null) { return; }
+		for(MultiblockBulkEditSession session : expired) {
+			CoordTriplet min = session.getMinimumCoord();
+			CoordTriplet max = session.getMaximumCoord();
+			BeefCoreLog.warning("Bulk edit session from %s to %s in world %s was open for over %d ticks. Ending it.", min, max, worldObj, MultiblockBulkEditSession.MAXIMUM_DURATION);
+			endBulkEdit(session);
+		}
+	}
+	
+	/**
+	 * @return The open bulk edit session containing the given coordinate, or null if there is none.
+	 */
+	private MultiblockBulkEditSession getBulkEditSession(int x, int y, int z) {
+		for(MultiblockBulkEditSession session : bulkEditSessions) {
+			if(session.contains(x, y, z)) {
+				return session;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Registers a controller as holding the place of parts in an unloaded chunk.
+	 * Parts loading in that chunk will be rebound to it directly.
+	 * 
+	 * @param controller The controller holding ghost parts.
+	 * @param chunkHash The hashed chunk coordinate of the unloaded chunk.
+	 */
+	public void addGhostChunk(MultiblockControllerBase controller, long chunkHash) {
+		Set<MultiblockControllerBase> chunkControllers = ghostControllers.get(chunkHash);
+		if(chunkControllers == null) {
+			chunkControllers = new HashSet<MultiblockControllerBase>();
+			ghostControllers.put(chunkHash, chunkControllers);
+		}
+		chunkControllers.add(controller);
+	}
+
+	/**
+	 * Unregisters a controller as holding the place of parts in a given chunk.
+	 * 
+	 * @param controller The controller which was holding ghost parts.
+	 * @param chunkHash The hashed chunk coordinate.
+	 */
+	public void removeGhostChunk(MultiblockControllerBase controller, long chunkHash) {
+		Set<MultiblockControllerBase> chunkControllers = ghostControllers.get(chunkHash);
+		if(chunkControllers != null) {
+			chunkControllers.remove(controller);
+			if(chunkControllers.isEmpty()) {
+				ghostControllers.remove(chunkHash);
+			}
+		}
+	}
+
+	/**
+	 * @return The index of where this world's parts are.
+	 */
+	public MultiblockPartIndex getPartIndex() {
+		return partIndex;
+	}
+
+	/**
+	 * @return The controller which owns the part at the given coordinate, or null if there is none.
+	 */
+	public MultiblockControllerBase getControllerAt(int x, int y, int z) {
+		IMultiblockPart part = partIndex.getPart(x, y, z);
+		return part != null ? part.getMultiblockController() : null;
+	}
+
+	/**
+	 * @return The index of controller bounding boxes in this world, for area queries.
+	 */
+	public MultiblockSpatialIndex getControllerIndex() {
+		return controllerIndex;
+	}
+
 	/**
 	 * Use this only if you know what you're doing. You should rarely need to iterate
 	 * over all controllers in a world!
@@ -401,6 +1318,43 @@ public class MultiblockWorldRegistry {
 
 	/* *** PRIVATE HELPERS *** */
 	
+	private MultiblockControllerBase getGhostOwner(IMultiblockPart part, CoordTriplet coord) {
+		Set<MultiblockControllerBase> chunkControllers = ghostControllers.get(coord.getChunkXZHash());
+		if(chunkControllers == null) { return null; }
+
+		for(MultiblockControllerBase controller : chunkControllers) {
+			if(controller.hasGhost(coord) && controller.getClass().equals(part.getMultiblockControllerType())) {
+				return controller;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Attaches a part to the machine which was holding its place. If the part also touches
+	 * other compatible machines, they must be merged.
+	 * @return A set of controllers to merge, including the ghost owner, or null if there are none.
+	 */
+	private Set<MultiblockControllerBase> rebindToGhostOwner(IMultiblockPart part, MultiblockControllerBase ghostOwner) {
+		ghostOwner.attachBlock(part);
+
+		Set<MultiblockControllerBase> controllersToMerge = null;
+		MultiblockControllerBase candidate;
+		for(IMultiblockPart neighborPart : part.getNeighboringParts()) {
+			candidate = neighborPart.getMultiblockController();
+			if(candidate == null || candidate == ghostOwner || !candidate.getClass().equals(ghostOwner.getClass())) {
+				continue;
+			}
+			
+			if(controllersToMerge == null) {
+				controllersToMerge = new HashSet<MultiblockControllerBase>();
+				controllersToMerge.add(ghostOwner);
+			}
+			controllersToMerge.add(candidate);
+		}
+		return controllersToMerge;
+	}
+	
 	private void addOrphanedPartThreadsafe(IMultiblockPart part) {
 		synchronized(orphanedPartsMutex) {
 			orphanedParts.add(part);
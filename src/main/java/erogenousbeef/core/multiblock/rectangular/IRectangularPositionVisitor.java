@@ -0,0 +1,23 @@
+package erogenousbeef.core.multiblock.rectangular;
+
+import net.minecraftforge.common.util.ForgeDirection;
+import erogenousbeef.core.multiblock.MultiblockValidationException;
+
+/**
+ * Receives the positions of a rectangular machine from RectangularShellWalker,
+ * along with the role each position plays in the machine.
+ * 
+ * @author Erogenous Beef
+ */
+public interface IRectangularPositionVisitor {
+
+	/**
+	 * @param x X coordinate of the position
+	 * @param y Y coordinate of the position
+	 * @param z Z coordinate of the position
+	 * @param position The role of the position: a corner, frame edge, face or the interior.
+	 * @param outwards For faces, the direction pointing out of the machine. UNKNOWN otherwise.
+	 * @throws MultiblockValidationException to stop the walk, e.g. if the position is not valid
+	 */
+	public void visit(int x, int y, int z, PartPosition position, ForgeDirection outwards) throws MultiblockValidationException;
+}
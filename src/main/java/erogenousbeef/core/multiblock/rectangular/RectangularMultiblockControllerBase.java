@@ -1,29 +1,181 @@
 package erogenousbeef.core.multiblock.rectangular;
 
+import java.util.Set;
+
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
+import net.minecraftforge.common.util.ForgeDirection;
 import erogenousbeef.core.common.CoordTriplet;
+import erogenousbeef.core.multiblock.IMultiblockPart;
 import erogenousbeef.core.multiblock.MultiblockControllerBase;
+import erogenousbeef.core.multiblock.MultiblockPartIndex;
+import erogenousbeef.core.multiblock.MultiblockRegistry;
 import erogenousbeef.core.multiblock.MultiblockValidationException;
 
 public abstract class RectangularMultiblockControllerBase extends
 		MultiblockControllerBase {
 
+	// Reused between validations of this machine
+	private RectangularValidationSnapshot validationSnapshot;
+	
+	// The bounding box for which part positions were last assigned, or null if they must be reassigned
+	private CoordTriplet assignedMinimumCoord;
+	private CoordTriplet assignedMaximumCoord;
+	
+	// Where, and as what, the last validation failed. Re-checked first, as it's usually still the problem.
+	private CoordTriplet lastFailedCoord;
+	private PartPosition lastFailedPosition;
+	
 	protected RectangularMultiblockControllerBase(World world) {
 		super(world);
+		validationSnapshot = new RectangularValidationSnapshot();
+		assignedMinimumCoord = assignedMaximumCoord = null;
+		lastFailedCoord = null;
+		lastFailedPosition = PartPosition.Unknown;
+	}
+	
+	@Override
+	public void recalculateMinMaxCoords() {
+		super.recalculateMinMaxCoords();
+		if(!isEmpty()) {
+			assignPartPositions(getMinimumCoord(), getMaximumCoord());
+		}
+	}
+	
+	@Override
+	public void assimilate(MultiblockControllerBase other) {
+		super.assimilate(other);
+
+		// The acquired parts were positioned against the other machine's bounding box, which may
+		// differ even where ours hasn't changed, so every part is repositioned once the box is recalculated.
+		invalidatePartPositions();
+	}
+	
+	/**
+	 * Tells every part where it lies in the machine, in one sweep, if the bounding box has changed
+	 * since positions were last assigned.
+	 */
+	private void assignPartPositions(CoordTriplet minimumCoord, CoordTriplet maximumCoord) {
+		if(minimumCoord.equals(assignedMinimumCoord) && maximumCoord.equals(assignedMaximumCoord)) {
+			return;
+		}
+
+		for(IMultiblockPart part : connectedParts) {
+			if(part instanceof RectangularMultiblockTileEntityBase) {
+				((RectangularMultiblockTileEntityBase)part).recalculateOutwardsDirection(
+						minimumCoord.x, minimumCoord.y, minimumCoord.z, maximumCoord.x, maximumCoord.y, maximumCoord.z);
+			}
+		}
+
+		assignedMinimumCoord = minimumCoord;
+		assignedMaximumCoord = maximumCoord;
+	}
+	
+	/**
+	 * Tells a newly-attached part where it lies, if positions are current. Otherwise it will be
+	 * positioned along with everything else once the bounding box is recalculated.
+	 */
+	void assignPartPosition(RectangularMultiblockTileEntityBase part) {
+		if(assignedMinimumCoord == null) { return; }
+
+		part.recalculateOutwardsDirection(assignedMinimumCoord.x, assignedMinimumCoord.y, assignedMinimumCoord.z,
+				assignedMaximumCoord.x, assignedMaximumCoord.y, assignedMaximumCoord.z);
+	}
+	
+	/**
+	 * Reassigns all part positions if they have been invalidated.
+	 */
+	void ensurePartPositions() {
+		if(assignedMinimumCoord == null && !isEmpty()) {
+			assignPartPositions(getMinimumCoord(), getMaximumCoord());
+		}
+	}
+	
+	/**
+	 * Called when parts forget their positions, e.g. when the machine is broken.
+	 */
+	void invalidatePartPositions() {
+		assignedMinimumCoord = assignedMaximumCoord = null;
 	}
 
 	/**
 	 * @return True if the machine is "whole" and should be assembled. False otherwise.
 	 */
 	protected void isMachineWhole() throws MultiblockValidationException {
+		CoordTriplet maximumCoord = getMaximumCoord();
+		CoordTriplet minimumCoord = getMinimumCoord();
+
+		checkMachineDimensions(minimumCoord, maximumCoord);
+		recheckLastFailure(minimumCoord, maximumCoord);
+		validateSlab(minimumCoord.x, maximumCoord.x, minimumCoord, maximumCoord);
+	}
+	
+	/**
+	 * Validates a few X-slabs of the machine per call, as many as fit within maxSteps positions
+	 * but always at least one. The cursor is the number of slabs already validated.
+	 */
+	@Override
+	protected int validateMachineIncrementally(int cursor, int maxSteps) throws MultiblockValidationException {
+		CoordTriplet maximumCoord = getMaximumCoord();
+		CoordTriplet minimumCoord = getMinimumCoord();
+
+		if(cursor == 0) {
+			checkMachineDimensions(minimumCoord, maximumCoord);
+			recheckLastFailure(minimumCoord, maximumCoord);
+		}
+
+		int slabSize = (maximumCoord.y - minimumCoord.y + 1) * (maximumCoord.z - minimumCoord.z + 1);
+		int slabs = Math.max(1, maxSteps / slabSize);
+		int fromX = minimumCoord.x + cursor;
+		int toX = Math.min(maximumCoord.x, fromX + slabs - 1);
+
+		validateSlab(fromX, toX, minimumCoord, maximumCoord);
+		return toX >= maximumCoord.x ? -1 : toX - minimumCoord.x + 1;
+	}
+	
+	/**
+	 * Checks the position at which the last validation failed, if it's still within the machine,
+	 * before anything else is gathered or checked.
+	 * @throws MultiblockValidationException if that position is still not acceptable
+	 */
+	private void recheckLastFailure(CoordTriplet minimumCoord, CoordTriplet maximumCoord) throws MultiblockValidationException {
+		CoordTriplet coord = lastFailedCoord;
+		if(coord == null) { return; }
+
+		if(coord.x < minimumCoord.x || coord.y < minimumCoord.y || coord.z < minimumCoord.z ||
+				coord.x > maximumCoord.x || coord.y > maximumCoord.y || coord.z > maximumCoord.z) {
+			return;
+		}
+		if(!shouldValidateInterior() && !RectangularShellWalker.isShell(coord.x, coord.y, coord.z, minimumCoord, maximumCoord)) {
+			return;
+		}
+
+		// Its role may have changed along with the bounding box, so check it as whatever it is now
+		RectangularShellWalker.visit(coord.x, coord.y, coord.z, minimumCoord, maximumCoord, new WorldValidationVisitor(this));
+	}
+	
+	/**
+	 * @return Where validation of this machine last failed at a particular block, or null if it has since passed.
+	 */
+	public CoordTriplet getLastFailedCoord() {
+		CoordTriplet coord = lastFailedCoord;
+		return coord == null ? null : coord.copy();
+	}
+	
+	/**
+	 * @return The role the block at getLastFailedCoord() was being checked for when the last
+	 * validation failed, or Unknown if there is no such block.
+	 */
+	public PartPosition getLastFailedPosition() {
+		return lastFailedCoord == null ? PartPosition.Unknown : lastFailedPosition;
+	}
+	
+	private void checkMachineDimensions(CoordTriplet minimumCoord, CoordTriplet maximumCoord) throws MultiblockValidationException {
 		if(connectedParts.size() < getMinimumNumberOfBlocksForAssembledMachine()) {
 			throw new MultiblockValidationException("Machine is too small.");
 		}
 		
-		CoordTriplet maximumCoord = getMaximumCoord();
-		CoordTriplet minimumCoord = getMinimumCoord();
-		
 		// Quickly check for exceeded dimensions
 		int deltaX = maximumCoord.x - minimumCoord.x + 1;
 		int deltaY = maximumCoord.y - minimumCoord.y + 1;
@@ -42,89 +194,221 @@ public abstract class RectangularMultiblockControllerBase extends
 		if(deltaX < minX) { throw new MultiblockValidationException(String.format("Machine is too small, it must be at least %d blocks in the X dimension", minX)); }
 		if(deltaY < minY) { throw new MultiblockValidationException(String.format("Machine is too small, it must be at least %d blocks in the Y dimension", minY)); }
 		if(deltaZ < minZ) { throw new MultiblockValidationException(String.format("Machine is too small, it must be at least %d blocks in the Z dimension", minZ)); }
+	}
+	
+	/**
+	 * Checks every position in the machine with an X coordinate between fromX and toX, inclusive.
+	 * The shell is checked first, then the interior if shouldValidateInterior() allows it.
+	 */
+	private void validateSlab(int fromX, int toX, CoordTriplet minimumCoord, CoordTriplet maximumCoord) throws MultiblockValidationException {
+		boolean validateInterior = shouldValidateInterior();
+		lastFailedCoord = null;
 
-		// Now we run a simple check on each block within that volume.
+		// Copy the volume out of the world first, then run a simple check on each block within it.
 		// Any block deviating = NO DEAL SIR
-		TileEntity te;
+		validationSnapshot.capture(worldObj, new CoordTriplet(fromX, minimumCoord.y, minimumCoord.z), new CoordTriplet(toX, maximumCoord.y, maximumCoord.z),
+				minimumCoord, maximumCoord, validateInterior);
+		try {
+			int parallelThreshold = getParallelValidationThreshold();
+			if(parallelThreshold > 0 && validationSnapshot.getVolume() >= parallelThreshold) {
+				RectangularParallelValidator.validate(this, fromX, toX, minimumCoord, maximumCoord, validateInterior);
+				return;
+			}
+
+			IRectangularPositionVisitor visitor = new SnapshotValidationVisitor(this);
+			RectangularShellWalker.walkShell(fromX, toX, minimumCoord, maximumCoord, visitor);
+			if(validateInterior) {
+				RectangularShellWalker.walkInterior(fromX, toX, minimumCoord, maximumCoord, visitor);
+			}
+		}
+		finally {
+			validationSnapshot.release();
+		}
+	}
+	
+	/**
+	 * Override this and return false if your machine does not care what is inside it, so that only
+	 * its shell is checked. isGoodForInterior() and isBlockGoodForInterior() will not be called.
+	 * @return True if the machine's interior should be validated. Defaults to true.
+	 */
+	protected boolean shouldValidateInterior() {
+		return true;
+	}
+	
+	/**
+	 * Override this to let very large machines be validated on several threads at once.
+	 * Only do so if your parts' isGoodForX() methods and your isBlockGoodForX() methods are
+	 * safe to call off the main thread. They must only read from the snapshot they are handed, or from
+	 * getValidationSnapshot(), never from the world.
+	 * @return The number of positions in the bounding box at or above which validation runs in parallel,
+	 * or 0 to always validate on the main thread. Defaults to 0.
+	 */
+	protected int getParallelValidationThreshold() {
+		return 0;
+	}
+	
+	/**
+	 * While isMachineWhole() is running, this holds a copy of the blocks, metadata and tile entities
+	 * inside the machine's bounding box, and is what isBlockGoodForX() is handed in place of the world.
+	 * It is empty at all other times.
+	 * When validating over several ticks, only the slabs being validated this tick are held.
+	 * @return The snapshot of the machine's bounding box.
+	 */
+	protected RectangularValidationSnapshot getValidationSnapshot() {
+		return validationSnapshot;
+	}
+	
+	@Override
+	protected void validateChangedBlocks(Set<CoordTriplet> changedBlocks) throws MultiblockValidationException {
+		CoordTriplet maximumCoord = getMaximumCoord();
+		CoordTriplet minimumCoord = getMinimumCoord();
+		boolean validateInterior = shouldValidateInterior();
+		IRectangularPositionVisitor visitor = new WorldValidationVisitor(this);
+		lastFailedCoord = null;
+
+		for(CoordTriplet coord : changedBlocks) {
+			if(coord.x < minimumCoord.x || coord.y < minimumCoord.y || coord.z < minimumCoord.z ||
+					coord.x > maximumCoord.x || coord.y > maximumCoord.y || coord.z > maximumCoord.z) {
+				continue;
+			}
+			if(!validateInterior && !RectangularShellWalker.isShell(coord.x, coord.y, coord.z, minimumCoord, maximumCoord)) {
+				continue;
+			}
+			
+			RectangularShellWalker.visit(coord.x, coord.y, coord.z, minimumCoord, maximumCoord, visitor);
+		}
+	}
+	
+	/**
+	 * Checks positions against the live world, for when only a handful of positions need checking.
+	 */
+	static class WorldValidationVisitor implements IRectangularPositionVisitor {
+		private final RectangularMultiblockControllerBase controller;
+		private final MultiblockPartIndex partIndex;
+
+		WorldValidationVisitor(RectangularMultiblockControllerBase controller) {
+			this.controller = controller;
+			this.partIndex = MultiblockRegistry.getPartIndex(controller.worldObj);
+		}
+
+		@Override
+		public void visit(int x, int y, int z, PartPosition position, ForgeDirection outwards) throws MultiblockValidationException {
+			// Indexed parts are found with an array read. Anything else, including parts the registry
+			// hasn't indexed yet, e.g. orphans or parts in an open bulk edit, comes from the world.
+			TileEntity te = partIndex != null ? partIndex.getPart(x, y, z) : null;
+			if(te == null) {
+				te = controller.worldObj.getTileEntity(x, y, z);
+			}
+			controller.validateBlock(controller.worldObj, x, y, z, position, te);
+		}
+	}
+	
+	/**
+	 * Checks positions against the machine's validation snapshot.
+	 */
+	static class SnapshotValidationVisitor implements IRectangularPositionVisitor {
+		private final RectangularMultiblockControllerBase controller;
+
+		SnapshotValidationVisitor(RectangularMultiblockControllerBase controller) {
+			this.controller = controller;
+		}
+
+		@Override
+		public void visit(int x, int y, int z, PartPosition position, ForgeDirection outwards) throws MultiblockValidationException {
+			RectangularValidationSnapshot snapshot = controller.validationSnapshot;
+			controller.validateBlock(snapshot, x, y, z, position, snapshot.getTileEntity(x, y, z));
+		}
+	}
+	
+	/**
+	 * Checks a single position within the machine's bounding box against the rules for
+	 * the frame, top, bottom, sides or interior, depending on its role.
+	 * @param access The world, or the validation snapshot, to hand to isBlockGoodForX().
+	 * @param position The position's role in the machine, from RectangularShellWalker.
+	 * @param te The tile entity at that position, or null if there is none.
+	 */
+	void validateBlock(IBlockAccess access, int x, int y, int z, PartPosition position, TileEntity te) throws MultiblockValidationException {
+		try {
+			checkBlock(access, x, y, z, position, te);
+		}
+		catch(MultiblockValidationException e) {
+			recordFailure(x, y, z, position);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Remembers where validation failed, so it can be re-checked first next time.
+	 */
+	void recordFailure(int x, int y, int z, PartPosition position) {
+		lastFailedCoord = new CoordTriplet(x, y, z);
+		lastFailedPosition = position;
+	}
+	
+	void checkBlock(IBlockAccess access, int x, int y, int z, PartPosition position, TileEntity te) throws MultiblockValidationException {
 		RectangularMultiblockTileEntityBase part;
 		Class<? extends RectangularMultiblockControllerBase> myClass = this.getClass();
 
-		for(int x = minimumCoord.x; x <= maximumCoord.x; x++) {
-			for(int y = minimumCoord.y; y <= maximumCoord.y; y++) {
-				for(int z = minimumCoord.z; z <= maximumCoord.z; z++) {
-					// Okay, figure out what sort of block this should be.
-					
-					te = this.worldObj.getTileEntity(x, y, z);
-					if(te instanceof RectangularMultiblockTileEntityBase) {
-						part = (RectangularMultiblockTileEntityBase)te;
-						
-						// Ensure this part should actually be allowed within a cube of this controller's type
-						if(!myClass.equals(part.getMultiblockControllerType()))
-						{
-							throw new MultiblockValidationException(String.format("Part @ %d, %d, %d is incompatible with machines of type %s", x, y, z, myClass.getSimpleName()));
-						}
-					}
-					else {
-						// This is permitted so that we can incorporate certain non-multiblock parts inside interiors
-						part = null;
-					}
-					
-					// Validate block type against both part-level and material-level validators.
-					int extremes = 0;
-					if(x == minimumCoord.x) { extremes++; }
-					if(y == minimumCoord.y) { extremes++; }
-					if(z == minimumCoord.z) { extremes++; }
-					
-					if(x == maximumCoord.x) { extremes++; }
-					if(y == maximumCoord.y) { extremes++; }
-					if(z == maximumCoord.z) { extremes++; }
-					
-					if(extremes >= 2) {
-						if(part != null) {
-							part.isGoodForFrame();
-						}
-						else {
-							isBlockGoodForFrame(this.worldObj, x, y, z);
-						}
-					}
-					else if(extremes == 1) {
-						if(y == maximumCoord.y) {
-							if(part != null) {
-								part.isGoodForTop();
-							}
-							else {
-								isBlockGoodForTop(this.worldObj, x, y, z);
-							}
-						}
-						else if(y == minimumCoord.y) {
-							if(part != null) {
-								part.isGoodForBottom();
-							}
-							else {
-								isBlockGoodForBottom(this.worldObj, x, y, z);
-							}
-						}
-						else {
-							// Side
-							if(part != null) {
-								part.isGoodForSides();
-							}
-							else {
-								isBlockGoodForSides(this.worldObj, x, y, z);
-							}
-						}
-					}
-					else {
-						if(part != null) {
-							part.isGoodForInterior();
-						}
-						else {
-							isBlockGoodForInterior(this.worldObj, x, y, z);
-						}
-					}
-				}
+		// Okay, figure out what sort of block this should be.
+		if(te instanceof RectangularMultiblockTileEntityBase) {
+			part = (RectangularMultiblockTileEntityBase)te;
+			
+			// Ensure this part should actually be allowed within a cube of this controller's type
+			if(!myClass.equals(part.getMultiblockControllerType()))
+			{
+				throw new MultiblockValidationException(String.format("Part @ %d, %d, %d is incompatible with machines of type %s", x, y, z, myClass.getSimpleName()), x, y, z);
 			}
 		}
+		else {
+			// This is permitted so that we can incorporate certain non-multiblock parts inside interiors
+			part = null;
+		}
+		
+		// Validate block type against both part-level and material-level validators.
+		switch(position) {
+			case FrameCorner:
+			case Frame:
+				if(part != null) {
+					part.isGoodForFrame();
+				}
+				else {
+					isBlockGoodForFrame(access, x, y, z);
+				}
+				break;
+			case TopFace:
+				if(part != null) {
+					part.isGoodForTop();
+				}
+				else {
+					isBlockGoodForTop(access, x, y, z);
+				}
+				break;
+			case BottomFace:
+				if(part != null) {
+					part.isGoodForBottom();
+				}
+				else {
+					isBlockGoodForBottom(access, x, y, z);
+				}
+				break;
+			case Interior:
+				if(part != null) {
+					part.isGoodForInterior();
+				}
+				else {
+					isBlockGoodForInterior(access, x, y, z);
+				}
+				break;
+			default:
+				// Side
+				if(part != null) {
+					part.isGoodForSides();
+				}
+				else {
+					isBlockGoodForSides(access, x, y, z);
+				}
+				break;
+		}
 	}	
 	
 }
@@ -32,65 +32,47 @@ public abstract class RectangularMultiblockTileEntityBase extends
 	@Override
 	public void onAttached(MultiblockControllerBase newController) {
 		super.onAttached(newController);
-		recalculateOutwardsDirection(newController.getMinimumCoord(), newController.getMaximumCoord());
+		if(newController instanceof RectangularMultiblockControllerBase) {
+			// Rectangular controllers assign positions in bulk whenever their bounding box changes
+			((RectangularMultiblockControllerBase)newController).assignPartPosition(this);
+		}
+		else {
+			recalculateOutwardsDirection(newController.getMinimumCoord(), newController.getMaximumCoord());
+		}
 	}
 	
 	
 	@Override
 	public void onMachineAssembled(MultiblockControllerBase controller) {
-		CoordTriplet maxCoord = controller.getMaximumCoord();
-		CoordTriplet minCoord = controller.getMinimumCoord();
-		
 		// Discover where I am on the reactor
-		recalculateOutwardsDirection(minCoord, maxCoord);
+		if(controller instanceof RectangularMultiblockControllerBase) {
+			((RectangularMultiblockControllerBase)controller).ensurePartPositions();
+		}
+		else {
+			recalculateOutwardsDirection(controller.getMinimumCoord(), controller.getMaximumCoord());
+		}
 	}
 
 	@Override
 	public void onMachineBroken() {
 		position = PartPosition.Unknown;
 		outwards = ForgeDirection.UNKNOWN;
+
+		MultiblockControllerBase controller = getMultiblockController();
+		if(controller instanceof RectangularMultiblockControllerBase) {
+			((RectangularMultiblockControllerBase)controller).invalidatePartPositions();
+		}
 	}
 	
 	// Positional helpers
 	public void recalculateOutwardsDirection(CoordTriplet minCoord, CoordTriplet maxCoord) {
-		outwards = ForgeDirection.UNKNOWN;
-		position = PartPosition.Unknown;
-
-		int facesMatching = 0;
-		if(maxCoord.x == this.xCoord || minCoord.x == this.xCoord) { facesMatching++; }
-		if(maxCoord.y == this.yCoord || minCoord.y == this.yCoord) { facesMatching++; }
-		if(maxCoord.z == this.zCoord || minCoord.z == this.zCoord) { facesMatching++; }
-		
-		if(facesMatching <= 0) { position = PartPosition.Interior; }
-		else if(facesMatching >= 3) { position = PartPosition.FrameCorner; }
-		else if(facesMatching == 2) { position = PartPosition.Frame; }
-		else {
-			// 1 face matches
-			if(maxCoord.x == this.xCoord) {
-				position = PartPosition.EastFace;
-				outwards = ForgeDirection.EAST;
-			}
-			else if(minCoord.x == this.xCoord) {
-				position = PartPosition.WestFace;
-				outwards = ForgeDirection.WEST;
-			}
-			else if(maxCoord.z == this.zCoord) {
-				position = PartPosition.SouthFace;
-				outwards = ForgeDirection.SOUTH;
-			}
-			else if(minCoord.z == this.zCoord) {
-				position = PartPosition.NorthFace;
-				outwards = ForgeDirection.NORTH;
-			}
-			else if(maxCoord.y == this.yCoord) {
-				position = PartPosition.TopFace;
-				outwards = ForgeDirection.UP;
-			}
-			else {
-				position = PartPosition.BottomFace;
-				outwards = ForgeDirection.DOWN;
-			}
-		}
+		recalculateOutwardsDirection(minCoord.x, minCoord.y, minCoord.z, maxCoord.x, maxCoord.y, maxCoord.z);
+	}
+	
+	void recalculateOutwardsDirection(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		// The same classification validation uses, so a part's role is always what it was validated as
+		position = RectangularShellWalker.getPosition(this.xCoord, this.yCoord, this.zCoord, minX, minY, minZ, maxX, maxY, maxZ);
+		outwards = RectangularShellWalker.getOutwardsDirection(position);
 	}
 	
 	///// Validation Helpers (IMultiblockPart)
@@ -0,0 +1,190 @@
+package erogenousbeef.core.multiblock.rectangular;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.minecraftforge.common.util.ForgeDirection;
+import erogenousbeef.core.common.CoordTriplet;
+import erogenousbeef.core.multiblock.MultiblockValidationException;
+
+/**
+ * Validates a captured rectangular machine on several threads at once.
+ * The bounding box is split into slabs along the X axis, which are halved recursively and checked on a
+ * shared fork-join pool. As in a serial check, the whole shell is checked before any of the interior.
+ * If several positions fail, the one reported is always the one a serial check would have found first,
+ * so results don't depend on thread timing.
+ *
+ * Workers only read the controller's validation snapshot, never the world: both the parts' isGoodForX()
+ * methods and the controller's isBlockGoodForX() methods are handed the snapshot. They are only used by
+ * controllers which opt in via getParallelValidationThreshold(), as those methods must then be safe to
+ * call off the main thread.
+ *
+ * @author Erogenous Beef
+ */
+class RectangularParallelValidator {
+
+	// Don't bother splitting the machine finer than this many slabs per thread
+	private static final int SLABS_PER_THREAD = 4;
+
+	// Thrown within a slab to stop it early, once an earlier slab has failed
+	private static final MultiblockValidationException ABANDONED = new MultiblockValidationException("Slab abandoned");
+
+	// A dedicated pool rather than the common pool, as we must still run on Java 7
+	private static ForkJoinPool pool = null;
+
+	/**
+	 * A slab's failure: the exception and the position which caused it.
+	 */
+	private static class SlabFailure {
+		MultiblockValidationException exception;
+		int x, y, z;
+		PartPosition position;
+	}
+
+	/**
+	 * Checks every position in the controller's captured snapshot, which covers X coordinates fromX to toX inclusive.
+	 * Returns only once every slab has stopped, so the snapshot may be released afterwards.
+	 * @throws MultiblockValidationException describing the position a serial check would have failed at first, if any failed
+	 */
+	static void validate(RectangularMultiblockControllerBase controller, int fromX, int toX, CoordTriplet minimumCoord, CoordTriplet maximumCoord, boolean validateInterior) throws MultiblockValidationException {
+		SlabFailure failure = validatePhase(controller, fromX, toX, minimumCoord, maximumCoord, true);
+		if(failure == null && validateInterior) {
+			failure = validatePhase(controller, fromX, toX, minimumCoord, maximumCoord, false);
+		}
+
+		if(failure != null) {
+			if(failure.position != null) {
+				controller.recordFailure(failure.x, failure.y, failure.z, failure.position);
+			}
+			throw failure.exception;
+		}
+	}
+
+	/**
+	 * Checks the shell or the interior of every slab.
+	 * @return The failure in the lowest slab which failed, which, as each slab is walked in the same order
+	 * as a serial check, is the one a serial check would have found. Null if none did.
+	 */
+	private static SlabFailure validatePhase(RectangularMultiblockControllerBase controller, int fromX, int toX, CoordTriplet minimumCoord, CoordTriplet maximumCoord, boolean shell) {
+		ForkJoinPool pool = getPool();
+
+		int sizeX = toX - fromX + 1;
+		int slabCount = Math.min(sizeX, pool.getParallelism() * SLABS_PER_THREAD);
+
+		Phase phase = new Phase(controller, fromX, sizeX, slabCount, minimumCoord, maximumCoord, shell);
+		return pool.invoke(new SlabTask(phase, 0, slabCount));
+	}
+
+	/**
+	 * What every slab of one phase shares.
+	 */
+	private static class Phase {
+		final RectangularMultiblockControllerBase controller;
+		final RectangularValidationSnapshot snapshot;
+		final int fromX, sizeX, slabCount;
+		final CoordTriplet minimumCoord, maximumCoord;
+		final boolean shell;
+
+		// Slabs above the lowest one to fail can't change the result, so they stop as soon as they notice
+		final AtomicInteger lowestFailedSlab;
+
+		Phase(RectangularMultiblockControllerBase controller, int fromX, int sizeX, int slabCount, CoordTriplet minimumCoord, CoordTriplet maximumCoord, boolean shell) {
+			this.controller = controller;
+			this.snapshot = controller.getValidationSnapshot();
+			this.fromX = fromX;
+			this.sizeX = sizeX;
+			this.slabCount = slabCount;
+			this.minimumCoord = minimumCoord;
+			this.maximumCoord = maximumCoord;
+			this.shell = shell;
+			this.lowestFailedSlab = new AtomicInteger(Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Checks slabs fromSlab to toSlab, exclusive, halving the range until a single slab is left.
+	 * Result: the failure in the lowest of those slabs which failed, or null.
+	 */
+	private static class SlabTask extends RecursiveTask<SlabFailure> {
+		private final Phase phase;
+		private final int fromSlab, toSlab;
+
+		SlabTask(Phase phase, int fromSlab, int toSlab) {
+			this.phase = phase;
+			this.fromSlab = fromSlab;
+			this.toSlab = toSlab;
+		}
+
+		@Override
+		protected SlabFailure compute() {
+			if(toSlab - fromSlab <= 1) {
+				return validateSlab(phase, fromSlab);
+			}
+
+			int middle = (fromSlab + toSlab) >>> 1;
+			SlabTask upper = new SlabTask(phase, middle, toSlab);
+			upper.fork();
+
+			SlabFailure failure;
+			try {
+				failure = new SlabTask(phase, fromSlab, middle).compute();
+			}
+			finally {
+				// None may still be reading the snapshot once the pool returns, even if we're failing
+				upper.quietlyJoin();
+			}
+
+			// The lower slabs' failure is the one a serial check would have found first
+			return failure != null ? failure : upper.join();
+		}
+	}
+
+	private static SlabFailure validateSlab(final Phase phase, final int slabIndex) {
+		int slabFromX = phase.fromX + (int)((long)phase.sizeX * slabIndex / phase.slabCount);
+		int slabToX = phase.fromX + (int)((long)phase.sizeX * (slabIndex + 1) / phase.slabCount) - 1;
+
+		final SlabFailure failure = new SlabFailure();
+		IRectangularPositionVisitor visitor = new IRectangularPositionVisitor() {
+			@Override
+			public void visit(int x, int y, int z, PartPosition position, ForgeDirection outwards) throws MultiblockValidationException {
+				if(phase.lowestFailedSlab.get() < slabIndex) { throw ABANDONED; }
+
+				failure.x = x;
+				failure.y = y;
+				failure.z = z;
+				failure.position = position;
+				phase.controller.checkBlock(phase.snapshot, x, y, z, position, phase.snapshot.getTileEntity(x, y, z));
+			}
+		};
+
+		try {
+			if(phase.shell) {
+				RectangularShellWalker.walkShell(slabFromX, slabToX, phase.minimumCoord, phase.maximumCoord, visitor);
+			}
+			else {
+				RectangularShellWalker.walkInterior(slabFromX, slabToX, phase.minimumCoord, phase.maximumCoord, visitor);
+			}
+		}
+		catch(MultiblockValidationException e) {
+			if(e == ABANDONED) { return null; }
+
+			int lowest;
+			do {
+				lowest = phase.lowestFailedSlab.get();
+			} while(slabIndex < lowest && !phase.lowestFailedSlab.compareAndSet(lowest, slabIndex));
+
+			failure.exception = e;
+			return failure;
+		}
+		return null;
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if(pool == null) {
+			// Leave a core for the server thread, which waits on the pool; workers are daemon threads
+			pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+		}
+		return pool;
+	}
+}
@@ -0,0 +1,137 @@
+package erogenousbeef.core.multiblock.rectangular;
+
+import net.minecraftforge.common.util.ForgeDirection;
+import erogenousbeef.core.common.CoordTriplet;
+import erogenousbeef.core.multiblock.MultiblockValidationException;
+
+/**
+ * Walks the positions of a rectangular machine's bounding box, one X-slab at a time.
+ * The shell (six faces, twelve frame edges and eight corners) and the interior are walked separately,
+ * so machines which only care about their casing never touch their interior.
+ * 
+ * A position counts as frame if it lies on two or more of the box's six bounding planes,
+ * as a corner if it lies on three or more, and as a face if it lies on exactly one.
+ * Where the box is one block thick, both planes of that dimension count. Parts use getPosition()
+ * to work out their own roles, so they always agree with validation.
+ * 
+ * @author Erogenous Beef
+ */
+public class RectangularShellWalker {
+
+	/**
+	 * Visits every shell position with an X coordinate between fromX and toX, inclusive.
+	 * Positions are visited in ascending X order. On the X-faces, the whole YZ-plane is visited;
+	 * between them, only the ring of positions around the plane's edge.
+	 * @param fromX Lowest X coordinate to visit
+	 * @param toX Highest X coordinate to visit
+	 * @param minimumCoord Minimum coordinate of the machine's bounding box
+	 * @param maximumCoord Maximum coordinate of the machine's bounding box
+	 * @param visitor Receives each position
+	 * @throws MultiblockValidationException if the visitor throws one
+	 */
+	public static void walkShell(int fromX, int toX, CoordTriplet minimumCoord, CoordTriplet maximumCoord, IRectangularPositionVisitor visitor) throws MultiblockValidationException {
+		for(int x = fromX; x <= toX; x++) {
+			if(x == minimumCoord.x || x == maximumCoord.x) {
+				// X-face: the whole plane is shell
+				for(int y = minimumCoord.y; y <= maximumCoord.y; y++) {
+					for(int z = minimumCoord.z; z <= maximumCoord.z; z++) {
+						visit(x, y, z, minimumCoord, maximumCoord, visitor);
+					}
+				}
+			}
+			else {
+				// Only the ring around the edge of this plane is shell
+				for(int y = minimumCoord.y; y <= maximumCoord.y; y++) {
+					if(y == minimumCoord.y || y == maximumCoord.y) {
+						for(int z = minimumCoord.z; z <= maximumCoord.z; z++) {
+							visit(x, y, z, minimumCoord, maximumCoord, visitor);
+						}
+					}
+					else {
+						visit(x, y, minimumCoord.z, minimumCoord, maximumCoord, visitor);
+						if(maximumCoord.z != minimumCoord.z) {
+							visit(x, y, maximumCoord.z, minimumCoord, maximumCoord, visitor);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits every interior position with an X coordinate between fromX and toX, inclusive,
+	 * in ascending X, then Y, then Z order.
+	 * @param fromX Lowest X coordinate to visit
+	 * @param toX Highest X coordinate to visit
+	 * @param minimumCoord Minimum coordinate of the machine's bounding box
+	 * @param maximumCoord Maximum coordinate of the machine's bounding box
+	 * @param visitor Receives each position
+	 * @throws MultiblockValidationException if the visitor throws one
+	 */
+	public static void walkInterior(int fromX, int toX, CoordTriplet minimumCoord, CoordTriplet maximumCoord, IRectangularPositionVisitor visitor) throws MultiblockValidationException {
+		for(int x = Math.max(fromX, minimumCoord.x + 1); x <= Math.min(toX, maximumCoord.x - 1); x++) {
+			for(int y = minimumCoord.y + 1; y < maximumCoord.y; y++) {
+				for(int z = minimumCoord.z + 1; z < maximumCoord.z; z++) {
+					visitor.visit(x, y, z, PartPosition.Interior, ForgeDirection.UNKNOWN);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return True if the position lies on the shell of the given box, rather than in its interior.
+	 */
+	public static boolean isShell(int x, int y, int z, CoordTriplet minimumCoord, CoordTriplet maximumCoord) {
+		return x == minimumCoord.x || x == maximumCoord.x ||
+				y == minimumCoord.y || y == maximumCoord.y ||
+				z == minimumCoord.z || z == maximumCoord.z;
+	}
+
+	/**
+	 * Visits a single position, which may be in the shell or the interior, with its role in the given box.
+	 * @throws MultiblockValidationException if the visitor throws one
+	 */
+	public static void visit(int x, int y, int z, CoordTriplet minimumCoord, CoordTriplet maximumCoord, IRectangularPositionVisitor visitor) throws MultiblockValidationException {
+		PartPosition position = getPosition(x, y, z, minimumCoord.x, minimumCoord.y, minimumCoord.z, maximumCoord.x, maximumCoord.y, maximumCoord.z);
+		visitor.visit(x, y, z, position, getOutwardsDirection(position));
+	}
+
+	/**
+	 * @return The role of a position within the given box, inclusive. Only meaningful for positions inside the box.
+	 */
+	public static PartPosition getPosition(int x, int y, int z, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		int extremes = 0;
+		if(x == minX) { extremes++; }
+		if(y == minY) { extremes++; }
+		if(z == minZ) { extremes++; }
+		
+		if(x == maxX) { extremes++; }
+		if(y == maxY) { extremes++; }
+		if(z == maxZ) { extremes++; }
+
+		if(extremes <= 0) { return PartPosition.Interior; }
+		else if(extremes >= 3) { return PartPosition.FrameCorner; }
+		else if(extremes == 2) { return PartPosition.Frame; }
+		else if(x == maxX) { return PartPosition.EastFace; }
+		else if(x == minX) { return PartPosition.WestFace; }
+		else if(z == maxZ) { return PartPosition.SouthFace; }
+		else if(z == minZ) { return PartPosition.NorthFace; }
+		else if(y == maxY) { return PartPosition.TopFace; }
+		else { return PartPosition.BottomFace; }
+	}
+
+	/**
+	 * @return The direction a face position faces out of the machine, or UNKNOWN for frame and interior positions.
+	 */
+	public static ForgeDirection getOutwardsDirection(PartPosition position) {
+		switch(position) {
+			case EastFace: return ForgeDirection.EAST;
+			case WestFace: return ForgeDirection.WEST;
+			case SouthFace: return ForgeDirection.SOUTH;
+			case NorthFace: return ForgeDirection.NORTH;
+			case TopFace: return ForgeDirection.UP;
+			case BottomFace: return ForgeDirection.DOWN;
+			default: return ForgeDirection.UNKNOWN;
+		}
+	}
+}
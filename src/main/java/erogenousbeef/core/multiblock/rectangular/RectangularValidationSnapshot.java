@@ -0,0 +1,268 @@
+package erogenousbeef.core.multiblock.rectangular;
+
+import java.util.Arrays;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraftforge.common.util.ForgeDirection;
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import erogenousbeef.core.common.CoordTriplet;
+
+/**
+ * A flat copy of the tile entities, blocks and metadata inside a rectangular machine's bounding box.
+ * Blocks and metadata are gathered one chunk section at a time straight from the chunk's storage.
+ * Tile entities are fetched through the world wherever a block has one, so they're created and
+ * chunks are loaded just as when validating against the world directly.
+ * The validation rules can then be run over plain arrays without going back through the world.
+ *
+ * The snapshot is an IBlockAccess, and is what isBlockGoodForX() is handed while it is held.
+ * Positions outside the captured box, or in the interior when only the shell was captured, read as air.
+ *
+ * Positions are stored X-major, then Y, then Z, matching the order in which
+ * RectangularMultiblockControllerBase checks them.
+ * The arrays are reused between captures and only grow when a larger box is captured.
+ *
+ * @author Erogenous Beef
+ */
+public class RectangularValidationSnapshot implements IBlockAccess {
+
+	private int minX, minY, minZ;
+	private int sizeX, sizeY, sizeZ;
+	private int volume;
+
+	private TileEntity[] tileEntities;
+	private Block[] blocks;
+	private byte[] metadata;
+
+	// The whole machine, of which this may only be a slab, and whether its interior is being copied
+	private CoordTriplet machineMin, machineMax;
+	private boolean includeInterior;
+
+	public RectangularValidationSnapshot() {
+		tileEntities = new TileEntity[0];
+		blocks = new Block[0];
+		metadata = new byte[0];
+		volume = 0;
+	}
+
+	/**
+	 * Copies everything within the given box, inclusive.
+	 * @param world The world to copy from
+	 * @param min Minimum coordinate of the box
+	 * @param max Maximum coordinate of the box
+	 */
+	public void capture(World world, CoordTriplet min, CoordTriplet max) {
+		capture(world, min, max, min, max, true);
+	}
+
+	/**
+	 * Copies everything within the given box, inclusive, which may be a slab of a larger machine.
+	 * @param world The world to copy from
+	 * @param min Minimum coordinate of the box
+	 * @param max Maximum coordinate of the box
+	 * @param machineMin Minimum coordinate of the whole machine
+	 * @param machineMax Maximum coordinate of the whole machine
+	 * @param includeInterior If false, only the machine's shell is copied, and interior positions read as air.
+	 */
+	public void capture(World world, CoordTriplet min, CoordTriplet max, CoordTriplet machineMin, CoordTriplet machineMax, boolean includeInterior) {
+		this.machineMin = machineMin;
+		this.machineMax = machineMax;
+		this.includeInterior = includeInterior;
+
+		minX = min.x; minY = min.y; minZ = min.z;
+		sizeX = max.x - min.x + 1;
+		sizeY = max.y - min.y + 1;
+		sizeZ = max.z - min.z + 1;
+		volume = sizeX * sizeY * sizeZ;
+
+		if(tileEntities.length < volume) {
+			tileEntities = new TileEntity[volume];
+			blocks = new Block[volume];
+			metadata = new byte[volume];
+		}
+		else {
+			Arrays.fill(tileEntities, 0, volume, null);
+		}
+
+		for(int chunkX = min.x >> 4; chunkX <= max.x >> 4; chunkX++) {
+			for(int chunkZ = min.z >> 4; chunkZ <= max.z >> 4; chunkZ++) {
+				captureChunk(world, world.getChunkFromChunkCoords(chunkX, chunkZ), max);
+			}
+		}
+	}
+
+	/**
+	 * Drops the captured tile entity references, so they can be garbage collected
+	 * once the chunks holding them unload. The arrays themselves are kept for reuse.
+	 */
+	public void release() {
+		Arrays.fill(tileEntities, 0, volume, null);
+		volume = 0;
+	}
+
+	/**
+	 * @return The number of positions captured
+	 */
+	public int getVolume() { return volume; }
+
+	/**
+	 * @return The flat index of a world coordinate within the captured box. The coordinate must be inside the box.
+	 */
+	public int getIndex(int x, int y, int z) {
+		return ((x - minX) * sizeY + (y - minY)) * sizeZ + (z - minZ);
+	}
+
+	public int getX(int index) { return minX + index / (sizeY * sizeZ); }
+	public int getY(int index) { return minY + (index / sizeZ) % sizeY; }
+	public int getZ(int index) { return minZ + index % sizeZ; }
+
+	/**
+	 * @return The tile entity captured at a flat index, or null if there was none.
+	 */
+	public TileEntity getTileEntity(int index) { return tileEntities[index]; }
+
+	/**
+	 * @return The block captured at a flat index.
+	 */
+	public Block getBlock(int index) { return blocks[index]; }
+
+	/**
+	 * @return The metadata captured at a flat index.
+	 */
+	public int getBlockMetadata(int index) { return metadata[index]; }
+
+	/**
+	 * @return True if the given world coordinate was captured.
+	 */
+	public boolean isCaptured(int x, int y, int z) {
+		if(volume <= 0 ||
+				x < minX || y < minY || z < minZ ||
+				x >= minX + sizeX || y >= minY + sizeY || z >= minZ + sizeZ) {
+			return false;
+		}
+		return includeInterior || RectangularShellWalker.isShell(x, y, z, machineMin, machineMax);
+	}
+
+	/* *** IBlockAccess *** */
+
+	/**
+	 * @return The tile entity captured at a world coordinate, or null if there was none or the coordinate wasn't captured.
+	 */
+	@Override
+	public TileEntity getTileEntity(int x, int y, int z) {
+		return isCaptured(x, y, z) ? tileEntities[getIndex(x, y, z)] : null;
+	}
+
+	/**
+	 * @return The block captured at a world coordinate, or air if the coordinate wasn't captured.
+	 */
+	@Override
+	public Block getBlock(int x, int y, int z) {
+		return isCaptured(x, y, z) ? blocks[getIndex(x, y, z)] : Blocks.air;
+	}
+
+	/**
+	 * @return The metadata captured at a world coordinate, or 0 if the coordinate wasn't captured.
+	 */
+	@Override
+	public int getBlockMetadata(int x, int y, int z) {
+		return isCaptured(x, y, z) ? metadata[getIndex(x, y, z)] : 0;
+	}
+
+	@Override
+	public int isBlockProvidingPowerTo(int x, int y, int z, int side) {
+		return getBlock(x, y, z).isProvidingStrongPower(this, x, y, z, side);
+	}
+
+	@Override
+	public boolean isAirBlock(int x, int y, int z) {
+		return getBlock(x, y, z).isAir(this, x, y, z);
+	}
+
+	@Override
+	public boolean isSideSolid(int x, int y, int z, ForgeDirection side, boolean _default) {
+		if(!isCaptured(x, y, z)) { return _default; }
+		return getBlock(x, y, z).isSideSolid(this, x, y, z, side);
+	}
+
+	// Rendering and lighting queries; snapshots are only taken on the server
+
+	@Override
+	@SideOnly(Side.CLIENT)
+	public int getLightBrightnessForSkyBlocks(int x, int y, int z, int lightValue) { return 0; }
+
+	@Override
+	@SideOnly(Side.CLIENT)
+	public BiomeGenBase getBiomeGenForCoords(int x, int z) { return null; }
+
+	@Override
+	@SideOnly(Side.CLIENT)
+	public int getHeight() { return 256; }
+
+	@Override
+	@SideOnly(Side.CLIENT)
+	public boolean extendedLevelsInChunkCache() { return false; }
+
+	/* *** PRIVATE HELPERS *** */
+
+	private void captureChunk(World world, Chunk chunk, CoordTriplet max) {
+		int chunkMinX = chunk.xPosition << 4;
+		int chunkMinZ = chunk.zPosition << 4;
+
+		int fromX = Math.max(minX, chunkMinX);
+		int toX = Math.min(max.x, chunkMinX + 15);
+		int fromZ = Math.max(minZ, chunkMinZ);
+		int toZ = Math.min(max.z, chunkMinZ + 15);
+
+		ExtendedBlockStorage[] storageArray = chunk.getBlockStorageArray();
+		ExtendedBlockStorage storage;
+		Block block;
+		int index;
+
+		for(int sectionY = minY >> 4; sectionY <= max.y >> 4; sectionY++) {
+			storage = sectionY >= 0 && sectionY < storageArray.length ? storageArray[sectionY] : null;
+			int fromY = Math.max(minY, sectionY << 4);
+			int toY = Math.min(max.y, (sectionY << 4) + 15);
+
+			for(int x = fromX; x <= toX; x++) {
+				for(int y = fromY; y <= toY; y++) {
+					boolean isInteriorRow = !includeInterior &&
+							x > machineMin.x && x < machineMax.x && y > machineMin.y && y < machineMax.y;
+
+					index = getIndex(x, y, fromZ);
+					for(int z = fromZ; z <= toZ; z++, index++) {
+						if(isInteriorRow && z > machineMin.z && z < machineMax.z) {
+							// Only the shell is wanted; skip straight to the far side of the machine
+							index += Math.min(toZ, machineMax.z - 1) - z;
+							z = Math.min(toZ, machineMax.z - 1);
+							continue;
+						}
+
+						if(storage == null) {
+							// Empty section
+							blocks[index] = Blocks.air;
+							metadata[index] = 0;
+							continue;
+						}
+
+						block = storage.getBlockByExtId(x & 15, y & 15, z & 15);
+						blocks[index] = block;
+						metadata[index] = (byte)storage.getExtBlockMetadata(x & 15, y & 15, z & 15);
+
+						// Through the world, as validation always has, so missing tile entities are created
+						if(block.hasTileEntity(metadata[index])) {
+							tileEntities[index] = world.getTileEntity(x, y, z);
+						}
+					}
+				}
+			}
+		}
+	}
+}
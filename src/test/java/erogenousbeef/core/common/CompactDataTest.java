@@ -0,0 +1,291 @@
+package erogenousbeef.core.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CompactDataTest {
+
+	@Test
+	public void primitivesRoundTrip() {
+		CompactDataWriter writer = new CompactDataWriter(3);
+		writer.writeByte(-7);
+		writer.writeBoolean(true);
+		writer.writeBoolean(false);
+		writer.writeFloat(-1.5f);
+		writer.writeDouble(Math.PI);
+		writer.writeFloat(Float.NaN);
+		writer.writeDouble(Double.NEGATIVE_INFINITY);
+
+		CompactDataReader reader = new CompactDataReader(writer.toByteArray());
+		assertEquals(3, reader.getSchemaVersion());
+		assertEquals(-7, reader.readByte());
+		assertTrue(reader.readBoolean());
+		assertFalse(reader.readBoolean());
+		assertEquals(-1.5f, reader.readFloat(), 0f);
+		assertEquals(Math.PI, reader.readDouble(), 0d);
+		assertTrue(Float.isNaN(reader.readFloat()));
+		assertEquals(Double.NEGATIVE_INFINITY, reader.readDouble(), 0d);
+		assertFalse(reader.hasRemaining());
+	}
+
+	@Test
+	public void varIntsRoundTripAtTheExtremes() {
+		int[] ints = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+		long[] longs = { 0L, 1L, 127L, 128L, Long.MAX_VALUE, -1L, Long.MIN_VALUE };
+
+		CompactDataWriter writer = new CompactDataWriter(0);
+		for(int value : ints) {
+			writer.writeVarInt(value);
+			writer.writeSignedVarInt(value);
+		}
+		for(long value : longs) {
+			writer.writeVarLong(value);
+			writer.writeSignedVarLong(value);
+		}
+
+		CompactDataReader reader = new CompactDataReader(writer.toByteArray());
+		for(int value : ints) {
+			assertEquals(value, reader.readVarInt());
+			assertEquals(value, reader.readSignedVarInt());
+		}
+		for(long value : longs) {
+			assertEquals(value, reader.readVarLong());
+			assertEquals(value, reader.readSignedVarLong());
+		}
+		assertFalse(reader.hasRemaining());
+	}
+
+	@Test
+	public void smallValuesTakeOneByte() {
+		assertEquals(1, bytesFor(0, false));
+		assertEquals(1, bytesFor(127, false));
+		assertEquals(2, bytesFor(128, false));
+		assertEquals(5, bytesFor(-1, false));
+
+		// Zigzag keeps small negative values small
+		assertEquals(1, bytesFor(-1, true));
+		assertEquals(1, bytesFor(-64, true));
+		assertEquals(2, bytesFor(-65, true));
+		assertEquals(5, bytesFor(Integer.MIN_VALUE, true));
+	}
+
+	@Test
+	public void stringsRoundTrip() {
+		CompactDataWriter writer = new CompactDataWriter(0);
+		writer.writeString("reactor");
+		writer.writeString("");
+		writer.writeString(null);
+		writer.writeString("\u00e9\u4e2d\ud83d\ude00");
+
+		CompactDataReader reader = new CompactDataReader(writer.toByteArray());
+		assertEquals("reactor", reader.readString());
+		assertEquals("", reader.readString());
+		assertEquals("", reader.readString());
+		assertEquals("\u00e9\u4e2d\ud83d\ude00", reader.readString());
+		assertFalse(reader.hasRemaining());
+	}
+
+	@Test
+	public void arraysRoundTrip() {
+		byte[] bytes = { 0, -1, 127, -128 };
+		int[] ints = { 0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 300 };
+		long[] longs = { Long.MIN_VALUE, -1L, 0L, Long.MAX_VALUE };
+		float[] floats = { 0f, -0f, 1.25f, Float.MAX_VALUE, Float.MIN_VALUE };
+		double[] doubles = { Double.MIN_VALUE, -2.5, 1e300 };
+
+		CompactDataWriter writer = new CompactDataWriter(0);
+		writer.writeByteArray(bytes);
+		writer.writeIntArray(ints);
+		writer.writeLongArray(longs);
+		writer.writeFloatArray(floats);
+		writer.writeDoubleArray(doubles);
+		writer.writeIntArray(new int[0]);
+
+		CompactDataReader reader = new CompactDataReader(writer.toByteArray());
+		assertArrayEquals(bytes, reader.readByteArray());
+		assertArrayEquals(ints, reader.readIntArray());
+		assertArrayEquals(longs, reader.readLongArray());
+		assertArrayEquals(floats, reader.readFloatArray(), 0f);
+		assertArrayEquals(doubles, reader.readDoubleArray(), 0d);
+		assertArrayEquals(new int[0], reader.readIntArray());
+		assertFalse(reader.hasRemaining());
+	}
+
+	@Test
+	public void booleanArraysRoundTripAtByteBoundaries() {
+		int[] lengths = { 0, 1, 7, 8, 9, 16, 17 };
+
+		CompactDataWriter writer = new CompactDataWriter(0);
+		for(int length : lengths) {
+			writer.writeBooleanArray(alternating(length));
+		}
+
+		CompactDataReader reader = new CompactDataReader(writer.toByteArray());
+		for(int length : lengths) {
+			assertArrayEquals(alternating(length), reader.readBooleanArray());
+		}
+		assertFalse(reader.hasRemaining());
+	}
+
+	@Test
+	public void coordinatesComeBackSorted() {
+		long[] coords = {
+			CoordTriplet.pack(5, 64, -3),
+			CoordTriplet.pack(-(1 << 25), -(1 << 11), -(1 << 25)),
+			CoordTriplet.pack(0, 0, 0),
+			CoordTriplet.pack((1 << 25) - 1, (1 << 11) - 1, (1 << 25) - 1),
+			CoordTriplet.pack(-1, -1, -1)
+		};
+		long[] expected = coords.clone();
+		Arrays.sort(expected);
+
+		CompactDataWriter writer = new CompactDataWriter(0);
+		writer.writeCoordinates(coords.clone());
+		writer.writeCoordinates(new long[0]);
+
+		CompactDataReader reader = new CompactDataReader(writer.toByteArray());
+		assertArrayEquals(expected, reader.readCoordinates());
+		assertArrayEquals(new long[0], reader.readCoordinates());
+		assertFalse(reader.hasRemaining());
+	}
+
+	@Test
+	public void neighboringCoordinatesAreSmall() {
+		long[] coords = new long[27];
+		int i = 0;
+		for(int x = 0; x < 3; x++) {
+			for(int y = 0; y < 3; y++) {
+				for(int z = 0; z < 3; z++) {
+					coords[i++] = CoordTriplet.pack(1000 + x, 70 + y, -2000 + z);
+				}
+			}
+		}
+
+		CompactDataWriter writer = new CompactDataWriter(0);
+		int headerSize = writer.size();
+		writer.writeCoordinates(coords);
+
+		// One long for the first coordinate, then a few bytes apiece at most
+		assertTrue(writer.size() - headerSize < 10 + 26 * 4);
+	}
+
+	@Test
+	public void perPartValuesFollowTheirCoordinates() {
+		long[] coords = { CoordTriplet.pack(3, 0, 0), CoordTriplet.pack(1, 0, 0), CoordTriplet.pack(2, 0, 0) };
+		int[] ints = { 30, 10, 20 };
+		float[] floats = { 3f, 1f, 2f };
+
+		CompactDataWriter writer = new CompactDataWriter(0);
+		writer.writeCoordinateInts(coords, ints);
+		writer.writeCoordinateFloats(coords, floats);
+
+		long[] sorted = { CoordTriplet.pack(1, 0, 0), CoordTriplet.pack(2, 0, 0), CoordTriplet.pack(3, 0, 0) };
+		CompactDataReader reader = new CompactDataReader(writer.toByteArray());
+		assertArrayEquals(sorted, reader.readCoordinates());
+		assertArrayEquals(new int[] { 10, 20, 30 }, reader.readIntArray());
+		assertArrayEquals(sorted, reader.readCoordinates());
+		assertArrayEquals(new float[] { 1f, 2f, 3f }, reader.readFloatArray(), 0f);
+
+		// The caller's arrays are left alone
+		assertArrayEquals(new int[] { 30, 10, 20 }, ints);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void perPartValuesMustMatchTheirCoordinates() {
+		new CompactDataWriter(0).writeCoordinateInts(new long[2], new int[3]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeSchemaVersionsAreRejected() {
+		new CompactDataWriter(-1);
+	}
+
+	@Test
+	public void bufferGrowsPastTheExpectedSize() {
+		CompactDataWriter writer = new CompactDataWriter(0, 1);
+		int[] values = new int[1000];
+		for(int i = 0; i < values.length; i++) { values[i] = i * 31 - 5000; }
+		writer.writeIntArray(values);
+
+		assertArrayEquals(values, new CompactDataReader(writer.toByteArray()).readIntArray());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyDataIsRejected() {
+		new CompactDataReader(new byte[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void dataWithoutTheMagicByteIsRejected() {
+		new CompactDataReader(new byte[] { 0, 0 });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void readingPastTheEndThrows() {
+		CompactDataWriter writer = new CompactDataWriter(0);
+		writer.writeByte(1);
+
+		CompactDataReader reader = new CompactDataReader(writer.toByteArray());
+		reader.readByte();
+		reader.readByte();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void truncatedFixedWidthValuesThrow() {
+		CompactDataWriter writer = new CompactDataWriter(0);
+		writer.writeFloat(1f);
+		byte[] data = writer.toByteArray();
+
+		new CompactDataReader(Arrays.copyOf(data, data.length - 1)).readFloat();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void overlongVarIntsThrow() {
+		byte[] data = { (byte)CompactDataWriter.MAGIC, 0, -1, -1, -1, -1, -1, 1 };
+		new CompactDataReader(data).readVarInt();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void arrayLengthsLongerThanTheDataThrow() {
+		CompactDataWriter writer = new CompactDataWriter(0);
+		writer.writeVarInt(1000);
+		writer.writeByte(0);
+
+		// Rejected before allocating 1000 floats
+		new CompactDataReader(writer.toByteArray()).readFloatArray();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeArrayLengthsThrow() {
+		CompactDataWriter writer = new CompactDataWriter(0);
+		writer.writeVarInt(-1);
+
+		new CompactDataReader(writer.toByteArray()).readBooleanArray();
+	}
+
+	private static int bytesFor(int value, boolean signed) {
+		CompactDataWriter writer = new CompactDataWriter(0);
+		int headerSize = writer.size();
+		if(signed) {
+			writer.writeSignedVarInt(value);
+		}
+		else {
+			writer.writeVarInt(value);
+		}
+		return writer.size() - headerSize;
+	}
+
+	private static boolean[] alternating(int length) {
+		boolean[] values = new boolean[length];
+		for(int i = 0; i < length; i++) {
+			values[i] = i % 3 == 0;
+		}
+		return values;
+	}
+}
@@ -0,0 +1,74 @@
+package erogenousbeef.core.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CoordTripletTest {
+
+	// The limits of the packed format: 26 bits of X and Z, 12 bits of Y, all signed
+	private static final int MIN_XZ = -(1 << 25);
+	private static final int MAX_XZ = (1 << 25) - 1;
+	private static final int MIN_Y = -(1 << 11);
+	private static final int MAX_Y = (1 << 11) - 1;
+
+	@Test
+	public void packRoundTripsAtTheLimits() {
+		int[] xzs = { MIN_XZ, -30000000, -1, 0, 1, 29999999, MAX_XZ };
+		int[] ys = { MIN_Y, -64, -1, 0, 255, 256, MAX_Y };
+
+		for(int x : xzs) {
+			for(int y : ys) {
+				for(int z : xzs) {
+					assertUnpacksTo(x, y, z, CoordTriplet.pack(x, y, z));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void instancePackMatchesStaticPack() {
+		CoordTriplet coord = new CoordTriplet(-123, 45, 678);
+		assertEquals(CoordTriplet.pack(-123, 45, 678), coord.pack());
+		assertEquals(coord, CoordTriplet.unpack(coord.pack()));
+	}
+
+	@Test
+	public void neighborsPackDistinctlyAcrossZero() {
+		Set<Long> seen = new HashSet<Long>();
+		for(int x = -2; x <= 1; x++) {
+			for(int y = -2; y <= 1; y++) {
+				for(int z = -2; z <= 1; z++) {
+					assertTrue(seen.add(CoordTriplet.pack(x, y, z)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void fieldsDoNotBleedIntoEachOther() {
+		// All bits set in one field must not change the others
+		assertUnpacksTo(-1, 0, 0, CoordTriplet.pack(-1, 0, 0));
+		assertUnpacksTo(0, -1, 0, CoordTriplet.pack(0, -1, 0));
+		assertUnpacksTo(0, 0, -1, CoordTriplet.pack(0, 0, -1));
+		assertNotEquals(CoordTriplet.pack(0, 0, -1), CoordTriplet.pack(0, -1, MAX_XZ));
+	}
+
+	@Test
+	public void coordinatesOutsideTheLimitsWrap() {
+		assertEquals(CoordTriplet.pack(MIN_XZ, 0, 0), CoordTriplet.pack(MAX_XZ + 1, 0, 0));
+		assertEquals(CoordTriplet.pack(0, MIN_Y, 0), CoordTriplet.pack(0, MAX_Y + 1, 0));
+		assertEquals(CoordTriplet.pack(0, 0, MAX_XZ), CoordTriplet.pack(0, 0, MIN_XZ - 1));
+	}
+
+	private static void assertUnpacksTo(int x, int y, int z, long packed) {
+		assertEquals(x, CoordTriplet.unpackX(packed));
+		assertEquals(y, CoordTriplet.unpackY(packed));
+		assertEquals(z, CoordTriplet.unpackZ(packed));
+	}
+}
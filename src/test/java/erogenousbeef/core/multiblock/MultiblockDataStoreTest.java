@@ -0,0 +1,159 @@
+package erogenousbeef.core.multiblock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MultiblockDataStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+	private MultiblockDataStore store;
+
+	@Before
+	public void setUp() {
+		directory = new File(folder.getRoot(), "beefcore");
+		store = new MultiblockDataStore(directory);
+	}
+
+	@Test
+	public void idsAreUniqueAndSurviveReopening() throws IOException {
+		long first = store.allocateId();
+		long second = store.allocateId();
+		assertTrue(first != 0);
+		assertTrue(first != second);
+
+		store.close();
+		store = new MultiblockDataStore(directory);
+		long third = store.allocateId();
+		assertTrue(third != first && third != second);
+	}
+
+	@Test
+	public void dataSurvivesReopening() throws IOException {
+		long id = store.allocateId();
+		store.getBuffer(id, 100).putInt(96, 0xBEEF);
+		store.close();
+
+		store = new MultiblockDataStore(directory);
+		assertTrue(store.hasData(id));
+		assertEquals(0xBEEF, store.getExistingBuffer(id).getInt(96));
+	}
+
+	@Test
+	public void newSpaceIsZeroed() throws IOException {
+		long id = store.allocateId();
+		ByteBuffer buffer = store.getBuffer(id, 8);
+		assertEquals(8, buffer.limit());
+		assertEquals(0L, buffer.getLong(0));
+	}
+
+	@Test
+	public void recordsShareARegionFile() throws IOException {
+		for(int i = 0; i < 10; i++) {
+			store.getBuffer(store.allocateId(), 16).putInt(0, i);
+		}
+		store.flush();
+
+		// The id counter, and one region
+		assertEquals(2, directory.listFiles().length);
+	}
+
+	@Test
+	public void growingKeepsDataAndNeighbors() throws IOException {
+		long a = store.allocateId();
+		long b = store.allocateId();
+		store.getBuffer(a, 4096).putInt(4092, 1);
+		store.getBuffer(b, 4096).putInt(0, 2);
+
+		// a can't grow in place, so it moves past b
+		ByteBuffer grown = store.getBuffer(a, 3 * 4096);
+		assertEquals(1, grown.getInt(4092));
+		assertEquals(0, grown.getInt(3 * 4096 - 4));
+		assertEquals(2, store.getBuffer(b, 4096).getInt(0));
+
+		grown.putInt(3 * 4096 - 4, 3);
+		store.close();
+
+		store = new MultiblockDataStore(directory);
+		ByteBuffer reopened = store.getExistingBuffer(a);
+		assertEquals(1, reopened.getInt(4092));
+		assertEquals(3, reopened.getInt(3 * 4096 - 4));
+		assertEquals(2, store.getExistingBuffer(b).getInt(0));
+	}
+
+	@Test
+	public void freedPagesAreReusedAndZeroed() throws IOException {
+		long a = store.allocateId();
+		long b = store.allocateId();
+		store.getBuffer(a, 4096).putInt(0, 7);
+		store.getBuffer(b, 4096);
+
+		// a moves out, leaving its old page free
+		store.getBuffer(a, 2 * 4096);
+
+		long c = store.allocateId();
+		ByteBuffer reused = store.getBuffer(c, 4096);
+		assertEquals(0, reused.getInt(0));
+		assertEquals(7, store.getBuffer(a, 2 * 4096).getInt(0));
+	}
+
+	@Test
+	public void missingDataIsNotCreated() throws IOException {
+		assertFalse(store.hasData(42));
+		assertNull(store.getExistingBuffer(42));
+		assertFalse(directory.exists());
+	}
+
+	@Test
+	public void releasedDataIsKeptUntilReopened() throws IOException {
+		long id = store.allocateId();
+		store.getBuffer(id, 16).putInt(0, 5);
+		store.release(id);
+		assertFalse(store.hasData(id));
+		store.flush();
+
+		// A chunk saved before the release can still take it back this session
+		assertTrue(store.retain(id));
+		assertTrue(store.hasData(id));
+		assertEquals(5, store.getExistingBuffer(id).getInt(0));
+	}
+
+	@Test
+	public void releasedDataIsReclaimedWhenReopened() throws IOException {
+		long id = store.allocateId();
+		store.getBuffer(id, 16).putInt(0, 5);
+		store.release(id);
+		store.close();
+
+		store = new MultiblockDataStore(directory);
+		assertFalse(store.hasData(id));
+		assertFalse(store.retain(id));
+		assertNull(store.getExistingBuffer(id));
+	}
+
+	@Test
+	public void unsavedReleasesAreForgotten() throws IOException {
+		long id = store.allocateId();
+		store.getBuffer(id, 16).putInt(0, 5);
+		store.flush();
+		store.release(id);
+
+		// The world never saved after the release, so its chunks may still refer to the data
+		store = new MultiblockDataStore(directory);
+		assertTrue(store.hasData(id));
+		assertEquals(5, store.getExistingBuffer(id).getInt(0));
+	}
+}
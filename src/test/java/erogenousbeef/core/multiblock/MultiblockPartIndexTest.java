@@ -0,0 +1,156 @@
+package erogenousbeef.core.multiblock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MultiblockPartIndexTest {
+
+	private MultiblockPartIndex index;
+
+	@Before
+	public void setUp() {
+		index = new MultiblockPartIndex();
+	}
+
+	@Test
+	public void emptyIndexHasNoParts() {
+		assertFalse(index.hasPart(0, 0, 0));
+		assertNull(index.getPart(0, 0, 0));
+		assertEquals(0, index.getNeighboringParts(0, 0, 0).length);
+	}
+
+	@Test
+	public void addedPartIsFound() {
+		TestPart part = new TestPart(5, 64, -7);
+		index.add(part);
+
+		assertTrue(index.hasPart(5, 64, -7));
+		assertSame(part, index.getPart(5, 64, -7));
+		assertFalse(index.hasPart(5, 64, -6));
+		assertNull(index.getPart(4, 64, -7));
+	}
+
+	@Test
+	public void removedPartIsGone() {
+		TestPart part = new TestPart(5, 64, -7);
+		index.add(part);
+		index.remove(part);
+
+		assertFalse(index.hasPart(5, 64, -7));
+		assertNull(index.getPart(5, 64, -7));
+	}
+
+	@Test
+	public void addReplacesPartAtSameLocation() {
+		TestPart first = new TestPart(1, 2, 3);
+		TestPart second = new TestPart(1, 2, 3);
+		index.add(first);
+		index.add(second);
+
+		assertSame(second, index.getPart(1, 2, 3));
+
+		// Removing the replaced part must not forget its replacement
+		index.remove(first);
+		assertSame(second, index.getPart(1, 2, 3));
+
+		index.remove(second);
+		assertFalse(index.hasPart(1, 2, 3));
+	}
+
+	@Test
+	public void removingUnknownPartDoesNothing() {
+		TestPart part = new TestPart(1, 2, 3);
+		index.add(part);
+
+		index.remove(new TestPart(100, 2, 3));
+		index.remove(new TestPart(1, 2, 4));
+		assertSame(part, index.getPart(1, 2, 3));
+	}
+
+	@Test
+	public void sectionCornersAreDistinct() {
+		// Every corner of the sections around the origin, including negative coordinates
+		int[] values = { -17, -16, -1, 0, 15, 16 };
+		for(int x : values) {
+			for(int y : values) {
+				for(int z : values) {
+					index.add(new TestPart(x, y, z));
+				}
+			}
+		}
+
+		for(int x : values) {
+			for(int y : values) {
+				for(int z : values) {
+					IMultiblockPart part = index.getPart(x, y, z);
+					assertEquals(x, part.xCoord);
+					assertEquals(y, part.yCoord);
+					assertEquals(z, part.zCoord);
+				}
+			}
+		}
+		assertFalse(index.hasPart(-15, 0, 0));
+		assertFalse(index.hasPart(1, 0, 0));
+	}
+
+	@Test
+	public void neighborsAcrossSectionBoundaries() {
+		TestPart center = new TestPart(0, 0, 0);
+		TestPart west = new TestPart(-1, 0, 0);
+		TestPart down = new TestPart(0, -1, 0);
+		TestPart north = new TestPart(0, 0, -1);
+		TestPart south = new TestPart(0, 0, 1);
+		TestPart up = new TestPart(0, 1, 0);
+		TestPart east = new TestPart(1, 0, 0);
+		TestPart diagonal = new TestPart(1, 1, 0);
+
+		for(TestPart part : new TestPart[] { center, west, down, north, south, up, east, diagonal }) {
+			index.add(part);
+		}
+
+		List<IMultiblockPart> neighbors = Arrays.asList(index.getNeighboringParts(0, 0, 0));
+		assertEquals(6, neighbors.size());
+		for(TestPart part : new TestPart[] { west, down, north, south, up, east }) {
+			assertTrue(neighbors.contains(part));
+		}
+
+		index.remove(up);
+		index.remove(west);
+		neighbors = Arrays.asList(index.getNeighboringParts(0, 0, 0));
+		assertEquals(4, neighbors.size());
+		assertFalse(neighbors.contains(up));
+		assertFalse(neighbors.contains(west));
+	}
+
+	@Test
+	public void emptiedSectionCanBeRefilled() {
+		TestPart part = new TestPart(40, 10, 40);
+		index.add(part);
+		index.remove(part);
+		assertFalse(index.hasPart(40, 10, 40));
+
+		TestPart again = new TestPart(41, 10, 40);
+		index.add(again);
+		assertSame(again, index.getPart(41, 10, 40));
+		assertFalse(index.hasPart(40, 10, 40));
+	}
+
+	@Test
+	public void clearForgetsEverything() {
+		index.add(new TestPart(0, 0, 0));
+		index.add(new TestPart(100, 0, 100));
+		index.clear();
+
+		assertFalse(index.hasPart(0, 0, 0));
+		assertFalse(index.hasPart(100, 0, 100));
+	}
+}
@@ -0,0 +1,151 @@
+package erogenousbeef.core.multiblock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MultiblockSpatialIndexTest {
+
+	private MultiblockSpatialIndex index;
+
+	@Before
+	public void setUp() {
+		index = new MultiblockSpatialIndex();
+	}
+
+	@Test
+	public void emptyIndexFindsNothing() {
+		assertTrue(index.getControllersContaining(0, 0, 0).isEmpty());
+		assertTrue(index.getControllersIntersecting(-1000, 0, -1000, 1000, 255, 1000).isEmpty());
+		assertTrue(index.getControllersWithinRadius(0, 0, 0, 100).isEmpty());
+	}
+
+	@Test
+	public void containingIsInclusiveOfTheBox() {
+		TestController controller = new TestController(-2, 10, -2, 2, 12, 2);
+		index.update(controller);
+
+		assertTrue(index.getControllersContaining(-2, 10, -2).contains(controller));
+		assertTrue(index.getControllersContaining(2, 12, 2).contains(controller));
+		assertTrue(index.getControllersContaining(0, 11, 0).contains(controller));
+
+		assertTrue(index.getControllersContaining(-3, 10, -2).isEmpty());
+		assertTrue(index.getControllersContaining(2, 13, 2).isEmpty());
+		assertTrue(index.getControllersContaining(2, 12, 3).isEmpty());
+	}
+
+	@Test
+	public void boxesSpanningChunksAreFoundFromEveryChunk() {
+		TestController controller = new TestController(-20, 0, -20, 40, 5, 40);
+		index.update(controller);
+
+		for(int x = -20; x <= 40; x += 15) {
+			for(int z = -20; z <= 40; z += 15) {
+				assertTrue(index.getControllersContaining(x, 3, z).contains(controller));
+			}
+		}
+	}
+
+	@Test
+	public void intersectingOnlyReturnsOverlappingControllers() {
+		TestController a = new TestController(0, 0, 0, 4, 4, 4);
+		TestController b = new TestController(10, 0, 0, 14, 4, 4);
+		TestController c = new TestController(0, 100, 0, 4, 104, 4);
+		index.update(a);
+		index.update(b);
+		index.update(c);
+
+		Set<MultiblockControllerBase> found = index.getControllersIntersecting(4, 0, 0, 10, 4, 0);
+		assertEquals(2, found.size());
+		assertTrue(found.contains(a));
+		assertTrue(found.contains(b));
+
+		found = index.getControllersIntersecting(5, 0, 0, 9, 200, 4);
+		assertTrue(found.isEmpty());
+
+		assertTrue(index.intersects(c, 0, 104, 0, 0, 200, 0));
+		assertFalse(index.intersects(c, 0, 0, 0, 0, 99, 0));
+	}
+
+	@Test
+	public void hugeQueriesMatchSmallOnes() {
+		TestController a = new TestController(0, 0, 0, 4, 4, 4);
+		TestController b = new TestController(5000, 0, 5000, 5004, 4, 5004);
+		index.update(a);
+		index.update(b);
+
+		// Covers far more chunks than are indexed, so every controller is tested directly
+		Set<MultiblockControllerBase> found = index.getControllersIntersecting(-100000, 0, -100000, 100000, 255, 100000);
+		assertEquals(2, found.size());
+
+		found = index.getControllersIntersecting(-100000, 0, -100000, 100000, 255, 100);
+		assertEquals(1, found.size());
+		assertTrue(found.contains(a));
+	}
+
+	@Test
+	public void updateMovesController() {
+		TestController controller = new TestController(0, 0, 0, 4, 4, 4);
+		index.update(controller);
+
+		// Within the same chunk
+		controller.setBounds(6, 0, 6, 8, 4, 8);
+		index.update(controller);
+		assertTrue(index.getControllersContaining(0, 0, 0).isEmpty());
+		assertTrue(index.getControllersContaining(7, 2, 7).contains(controller));
+
+		// Into different chunks
+		controller.setBounds(-40, 0, -40, -36, 4, -36);
+		index.update(controller);
+		assertTrue(index.getControllersContaining(7, 2, 7).isEmpty());
+		assertTrue(index.getControllersContaining(-38, 2, -38).contains(controller));
+		assertEquals(1, index.getControllersIntersecting(-100, 0, -100, 100, 10, 100).size());
+	}
+
+	@Test
+	public void removedControllerIsGone() {
+		TestController a = new TestController(0, 0, 0, 20, 4, 20);
+		TestController b = new TestController(0, 0, 0, 4, 4, 4);
+		index.update(a);
+		index.update(b);
+		index.remove(a);
+
+		Set<MultiblockControllerBase> found = index.getControllersContaining(2, 2, 2);
+		assertEquals(1, found.size());
+		assertTrue(found.contains(b));
+		assertTrue(index.getControllersContaining(18, 2, 18).isEmpty());
+		assertFalse(index.intersects(a, 0, 0, 0, 20, 4, 20));
+
+		// Removing twice is harmless
+		index.remove(a);
+	}
+
+	@Test
+	public void radiusMeasuresToTheNearestFace() {
+		// Blocks 10 to 12 occupy the span [10, 13) on each axis
+		TestController controller = new TestController(10, 10, 10, 12, 12, 12);
+		index.update(controller);
+
+		assertTrue(index.getControllersWithinRadius(11.5, 11.5, 11.5, 0).contains(controller));
+		assertTrue(index.getControllersWithinRadius(5, 11, 11, 5).contains(controller));
+		assertTrue(index.getControllersWithinRadius(5, 11, 11, 4.9).isEmpty());
+		assertTrue(index.getControllersWithinRadius(18, 11, 11, 5).contains(controller));
+		assertTrue(index.getControllersWithinRadius(18, 11, 11, 4.9).isEmpty());
+
+		// Diagonally off a corner, at a distance of 5
+		assertTrue(index.getControllersWithinRadius(16, 17, 11, 5).contains(controller));
+		assertTrue(index.getControllersWithinRadius(16, 17, 11, 4.9).isEmpty());
+	}
+
+	@Test
+	public void clearForgetsEverything() {
+		index.update(new TestController(0, 0, 0, 4, 4, 4));
+		index.clear();
+		assertTrue(index.getControllersContaining(2, 2, 2).isEmpty());
+	}
+}
@@ -0,0 +1,96 @@
+package erogenousbeef.core.multiblock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StructureFingerprintTest {
+
+	private static class OtherPart extends TestPart {
+		OtherPart(int x, int y, int z) { super(x, y, z); }
+	}
+
+	@Test
+	public void emptyStructureHasZeroFingerprint() {
+		assertEquals(0, MultiblockControllerBase.getStructureFingerprint(new ArrayList<IMultiblockPart>()));
+	}
+
+	@Test
+	public void fingerprintIgnoresPartOrder() {
+		List<IMultiblockPart> parts = makeCube(3);
+		long fingerprint = MultiblockControllerBase.getStructureFingerprint(parts);
+
+		Collections.reverse(parts);
+		assertEquals(fingerprint, MultiblockControllerBase.getStructureFingerprint(parts));
+		Collections.shuffle(parts, new java.util.Random(42));
+		assertEquals(fingerprint, MultiblockControllerBase.getStructureFingerprint(parts));
+	}
+
+	@Test
+	public void equalPartsInNewObjectsMatch() {
+		assertEquals(MultiblockControllerBase.getStructureFingerprint(makeCube(3)),
+				MultiblockControllerBase.getStructureFingerprint(makeCube(3)));
+	}
+
+	@Test
+	public void movingOnePartChangesFingerprint() {
+		List<IMultiblockPart> parts = makeCube(3);
+		long fingerprint = MultiblockControllerBase.getStructureFingerprint(parts);
+
+		parts.set(4, new TestPart(10, 0, 0));
+		assertNotEquals(fingerprint, MultiblockControllerBase.getStructureFingerprint(parts));
+	}
+
+	@Test
+	public void removingOnePartChangesFingerprint() {
+		List<IMultiblockPart> parts = makeCube(3);
+		long fingerprint = MultiblockControllerBase.getStructureFingerprint(parts);
+
+		parts.remove(parts.size() - 1);
+		assertNotEquals(fingerprint, MultiblockControllerBase.getStructureFingerprint(parts));
+	}
+
+	@Test
+	public void swappingPartTypesChangesFingerprint() {
+		List<IMultiblockPart> a = new ArrayList<IMultiblockPart>();
+		a.add(new TestPart(0, 0, 0));
+		a.add(new OtherPart(1, 0, 0));
+
+		List<IMultiblockPart> b = new ArrayList<IMultiblockPart>();
+		b.add(new OtherPart(0, 0, 0));
+		b.add(new TestPart(1, 0, 0));
+
+		assertNotEquals(MultiblockControllerBase.getStructureFingerprint(a), MultiblockControllerBase.getStructureFingerprint(b));
+	}
+
+	@Test
+	public void opposingOffsetsDoNotCancelOut() {
+		// Plain sums of the packed coordinates would be equal here
+		List<IMultiblockPart> a = new ArrayList<IMultiblockPart>();
+		a.add(new TestPart(0, 0, 0));
+		a.add(new TestPart(2, 0, 0));
+
+		List<IMultiblockPart> b = new ArrayList<IMultiblockPart>();
+		b.add(new TestPart(1, 0, 0));
+		b.add(new TestPart(1, 0, 0));
+
+		assertNotEquals(MultiblockControllerBase.getStructureFingerprint(a), MultiblockControllerBase.getStructureFingerprint(b));
+	}
+
+	private static List<IMultiblockPart> makeCube(int size) {
+		List<IMultiblockPart> parts = new ArrayList<IMultiblockPart>();
+		for(int x = 0; x < size; x++) {
+			for(int y = 0; y < size; y++) {
+				for(int z = 0; z < size; z++) {
+					parts.add(new TestPart(x, y, z));
+				}
+			}
+		}
+		return parts;
+	}
+}
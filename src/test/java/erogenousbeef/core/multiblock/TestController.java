@@ -0,0 +1,90 @@
+package erogenousbeef.core.multiblock;
+
+import net.minecraft.nbt.NBTTagCompound;
+import erogenousbeef.core.common.CoordTriplet;
+
+/**
+ * A controller with no world and no game logic, whose bounding box is set directly,
+ * for tests of the registry's bookkeeping.
+ */
+public class TestController extends MultiblockControllerBase {
+
+	private CoordTriplet min;
+	private CoordTriplet max;
+
+	public TestController(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		super(null);
+		setBounds(minX, minY, minZ, maxX, maxY, maxZ);
+	}
+
+	public void setBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		min = new CoordTriplet(minX, minY, minZ);
+		max = new CoordTriplet(maxX, maxY, maxZ);
+	}
+
+	@Override
+	public CoordTriplet getMinimumCoord() { return min.copy(); }
+
+	@Override
+	public CoordTriplet getMaximumCoord() { return max.copy(); }
+
+	@Override
+	public void onAttachedPartWithMultiblockData(IMultiblockPart part, NBTTagCompound data) {}
+
+	@Override
+	protected void onBlockAdded(IMultiblockPart newPart) {}
+
+	@Override
+	protected void onBlockRemoved(IMultiblockPart oldPart) {}
+
+	@Override
+	protected void onMachineAssembled() {}
+
+	@Override
+	protected void onMachineRestored() {}
+
+	@Override
+	protected void onMachinePaused() {}
+
+	@Override
+	protected void onMachineDisassembled() {}
+
+	@Override
+	protected int getMinimumNumberOfBlocksForAssembledMachine() { return 1; }
+
+	@Override
+	protected int getMaximumXSize() { return -1; }
+
+	@Override
+	protected int getMaximumZSize() { return -1; }
+
+	@Override
+	protected int getMaximumYSize() { return -1; }
+
+	@Override
+	protected void isMachineWhole() throws MultiblockValidationException {}
+
+	@Override
+	protected void onAssimilate(MultiblockControllerBase assimilated) {}
+
+	@Override
+	protected void onAssimilated(MultiblockControllerBase assimilator) {}
+
+	@Override
+	protected boolean updateServer() { return false; }
+
+	@Override
+	protected void updateClient() {}
+
+	@Override
+	public void writeToNBT(NBTTagCompound data) {}
+
+	@Override
+	public void readFromNBT(NBTTagCompound data) {}
+
+	@Override
+	public void formatDescriptionPacket(NBTTagCompound data) {}
+
+	@Override
+	public void decodeDescriptionPacket(NBTTagCompound data) {}
+}
@@ -0,0 +1,32 @@
+package erogenousbeef.core.multiblock;
+
+/**
+ * A bare multiblock part, placed at a fixed location, for tests which don't need a world.
+ */
+public class TestPart extends MultiblockTileEntityBase {
+
+	public TestPart(int x, int y, int z) {
+		super();
+		xCoord = x;
+		yCoord = y;
+		zCoord = z;
+	}
+
+	@Override
+	public void onMachineAssembled(MultiblockControllerBase multiblockControllerBase) {}
+
+	@Override
+	public void onMachineBroken() {}
+
+	@Override
+	public void onMachineActivated() {}
+
+	@Override
+	public void onMachineDeactivated() {}
+
+	@Override
+	public MultiblockControllerBase createNewMultiblock() { return null; }
+
+	@Override
+	public Class<? extends MultiblockControllerBase> getMultiblockControllerType() { return null; }
+}
@@ -0,0 +1,107 @@
+package erogenousbeef.core.multiblock.rectangular;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraftforge.common.util.ForgeDirection;
+
+import org.junit.Test;
+
+import erogenousbeef.core.common.CoordTriplet;
+import erogenousbeef.core.multiblock.MultiblockValidationException;
+
+public class RectangularShellWalkerTest {
+
+	/**
+	 * Records every position visited, failing on repeats.
+	 */
+	private static class RecordingVisitor implements IRectangularPositionVisitor {
+		Map<Long, PartPosition> visited = new HashMap<Long, PartPosition>();
+
+		@Override
+		public void visit(int x, int y, int z, PartPosition position, ForgeDirection outwards) throws MultiblockValidationException {
+			assertEquals(RectangularShellWalker.getOutwardsDirection(position), outwards);
+			assertTrue("Visited twice: " + x + ", " + y + ", " + z, visited.put(CoordTriplet.pack(x, y, z), position) == null);
+		}
+	}
+
+	@Test
+	public void rolesInACube() {
+		assertEquals(PartPosition.FrameCorner, position(0, 0, 0, 4, 4, 4, 0, 0, 0));
+		assertEquals(PartPosition.FrameCorner, position(0, 0, 0, 4, 4, 4, 4, 4, 4));
+		assertEquals(PartPosition.Frame, position(0, 0, 0, 4, 4, 4, 2, 0, 0));
+		assertEquals(PartPosition.Frame, position(0, 0, 0, 4, 4, 4, 4, 2, 4));
+		assertEquals(PartPosition.EastFace, position(0, 0, 0, 4, 4, 4, 4, 2, 2));
+		assertEquals(PartPosition.WestFace, position(0, 0, 0, 4, 4, 4, 0, 2, 2));
+		assertEquals(PartPosition.SouthFace, position(0, 0, 0, 4, 4, 4, 2, 2, 4));
+		assertEquals(PartPosition.NorthFace, position(0, 0, 0, 4, 4, 4, 2, 2, 0));
+		assertEquals(PartPosition.TopFace, position(0, 0, 0, 4, 4, 4, 2, 4, 2));
+		assertEquals(PartPosition.BottomFace, position(0, 0, 0, 4, 4, 4, 2, 0, 2));
+		assertEquals(PartPosition.Interior, position(0, 0, 0, 4, 4, 4, 2, 2, 2));
+	}
+
+	@Test
+	public void bothPlanesCountWhereOneBlockThick() {
+		// A 5x1x5 floor: the middle lies on the top and bottom planes at once
+		assertEquals(PartPosition.Frame, position(0, 0, 0, 4, 0, 4, 2, 0, 2));
+		assertEquals(PartPosition.FrameCorner, position(0, 0, 0, 4, 0, 4, 2, 0, 0));
+
+		// A 1x1x5 rod: every position is at least on four planes
+		assertEquals(PartPosition.FrameCorner, position(0, 0, 0, 0, 0, 4, 0, 0, 2));
+	}
+
+	@Test
+	public void walkVisitsEveryPositionOnceWithItsRole() throws MultiblockValidationException {
+		int[][] boxes = {
+				{ 0, 0, 0, 4, 4, 4 },
+				{ -3, 10, -3, 2, 12, 5 },
+				{ 0, 0, 0, 4, 0, 4 },
+				{ 0, 0, 0, 0, 0, 6 },
+				{ 5, 5, 5, 5, 5, 5 },
+				{ 0, 0, 0, 1, 1, 1 }
+		};
+
+		for(int[] box : boxes) {
+			CoordTriplet min = new CoordTriplet(box[0], box[1], box[2]);
+			CoordTriplet max = new CoordTriplet(box[3], box[4], box[5]);
+
+			RecordingVisitor shell = new RecordingVisitor();
+			RectangularShellWalker.walkShell(min.x, max.x, min, max, shell);
+			RecordingVisitor interior = new RecordingVisitor();
+			RectangularShellWalker.walkInterior(min.x, max.x, min, max, interior);
+
+			int volume = (max.x - min.x + 1) * (max.y - min.y + 1) * (max.z - min.z + 1);
+			assertEquals(volume, shell.visited.size() + interior.visited.size());
+
+			for(int x = min.x; x <= max.x; x++) {
+				for(int y = min.y; y <= max.y; y++) {
+					for(int z = min.z; z <= max.z; z++) {
+						long key = CoordTriplet.pack(x, y, z);
+						boolean isShell = RectangularShellWalker.isShell(x, y, z, min, max);
+						PartPosition expected = RectangularShellWalker.getPosition(x, y, z, min.x, min.y, min.z, max.x, max.y, max.z);
+
+						assertEquals(isShell, shell.visited.containsKey(key));
+						assertEquals(expected, isShell ? shell.visited.get(key) : interior.visited.get(key));
+						assertEquals(isShell, expected != PartPosition.Interior);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void facesFaceOutwards() {
+		assertEquals(ForgeDirection.UP, RectangularShellWalker.getOutwardsDirection(PartPosition.TopFace));
+		assertEquals(ForgeDirection.DOWN, RectangularShellWalker.getOutwardsDirection(PartPosition.BottomFace));
+		assertEquals(ForgeDirection.EAST, RectangularShellWalker.getOutwardsDirection(PartPosition.EastFace));
+		assertEquals(ForgeDirection.UNKNOWN, RectangularShellWalker.getOutwardsDirection(PartPosition.Frame));
+		assertEquals(ForgeDirection.UNKNOWN, RectangularShellWalker.getOutwardsDirection(PartPosition.Interior));
+	}
+
+	private static PartPosition position(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int x, int y, int z) {
+		return RectangularShellWalker.getPosition(x, y, z, minX, minY, minZ, maxX, maxY, maxZ);
+	}
+}